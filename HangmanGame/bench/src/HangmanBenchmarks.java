@@ -0,0 +1,152 @@
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+// 游戏热点路径的基准测试，独立于游戏模块（HangmanBench.iml），运行时需要把 HangmanGame 模块放在 classpath 上
+// 用法: java -Djava.awt.headless=true HangmanBenchmarks [词典大小...]，默认测试 1000、100000 和 10000000 个单词的词典
+// 每项测试先预热再计时，输出每次操作的耗时和分配的字节数（通过 com.sun.management.ThreadMXBean 统计）
+public class HangmanBenchmarks {
+    private static final long WARMUP_NANOS = 1_000_000_000L;
+    private static final long MEASURE_NANOS = 2_000_000_000L;
+    private static final int BATCH = 64; // 快速操作每检查一次时间执行的次数
+    private static final int[] DEFAULT_SIZES = { 1_000, 100_000, 10_000_000 };
+    private static final String LETTERS_BY_FREQUENCY = "EEEEEEEEEEEETTTTTTTTTAAAAAAAAOOOOOOOIIIIIIINNNNNNNSSSSSSRRRRRRHHHHHLLLLDDDDCCCUUUMMMFFPPGGWWYYBVKJXQZ";
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private static volatile long sink; // 防止 JIT 把测试代码当作无用代码消除
+
+    // 一次被测操作，i 为操作序号
+    private interface Operation {
+        long run(int i) throws Exception;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int[] sizes = DEFAULT_SIZES;
+        if (args.length > 0) {
+            sizes = new int[args.length];
+            for (int i = 0; i < args.length; i++) {
+                sizes[i] = Integer.parseInt(args[i]);
+            }
+        }
+
+        System.out.printf("%-24s %12s %14s %12s%n", "benchmark", "words", "ns/op", "B/op");
+        benchmarkPaint();
+        for (int size : sizes) {
+            Path text = generateDictionary(size);
+            try {
+                benchmarkDictionary(text, size);
+            } finally {
+                Files.deleteIfExists(WordIndex.compiledPath(text));
+                Files.deleteIfExists(text);
+            }
+        }
+    }
+
+    private static void benchmarkDictionary(Path text, int size) throws Exception {
+        // 词典加载
+        measure("loadText", size, 1, i -> WordIndex.loadText(text).size());
+        WordIndex index = WordIndex.loadText(text);
+        DictionaryCompiler.compile(index, WordIndex.compiledPath(text));
+        measure("loadCompiled", size, 1, i -> WordIndex.loadCompiled(text).size());
+
+        // newGame(Difficulty) 中的选词和开局
+        Random random = new Random(42);
+        HangmanEngine engine = new HangmanEngine();
+        Difficulty[] difficulties = Difficulty.values();
+        measure("newGame", size, BATCH, i -> {
+            Difficulty difficulty = difficulties[i % difficulties.length];
+            int wordId = difficulty.pickWord(index, random);
+            engine.start(index, wordId, difficulty);
+            return wordId;
+        });
+
+        // checkLetter 中的猜字母和胜负判断：按字母频率依次猜，每轮结束后换一个单词
+        char[] guesses = "ETAOINSRHLDCUMFPGWYBVKJXQZ".toCharArray();
+        int[] next = new int[1];
+        engine.start(index, index.pick(1, Integer.MAX_VALUE, random), Difficulty.MEDIUM);
+        measure("checkLetter", size, BATCH, i -> {
+            if (engine.isOver()) {
+                engine.start(index, index.pick(1, Integer.MAX_VALUE, random), Difficulty.MEDIUM);
+                next[0] = 0;
+            }
+            return engine.guess(guesses[next[0]++]);
+        });
+
+        // giveHint：每轮用完所有提示后换一个单词
+        measure("giveHint", size, BATCH, i -> {
+            char letter = engine.hint();
+            if (letter == 0) {
+                engine.start(index, index.pick(1, Integer.MAX_VALUE, random), Difficulty.HARD);
+            }
+            return letter;
+        });
+    }
+
+    // HangmanPanel.paintComponent 的离屏绘制耗时，依次绘制每个错误阶段
+    private static void benchmarkPaint() throws Exception {
+        HangmanPanel panel = new HangmanPanel();
+        panel.setSize(400, 500);
+        BufferedImage image = new BufferedImage(400, 500, BufferedImage.TYPE_INT_ARGB);
+        measure("paintComponent", 0, BATCH, i -> {
+            panel.setErrors(i % (HangmanEngine.MAX_ERRORS + 1));
+            Graphics2D g = image.createGraphics();
+            try {
+                panel.paint(g);
+            } finally {
+                g.dispose();
+            }
+            return i;
+        });
+    }
+
+    private static void measure(String name, int size, int batch, Operation operation) throws Exception {
+        run(operation, batch, WARMUP_NANOS);
+        long threadId = Thread.currentThread().getId();
+        long allocatedBefore = THREADS.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        long ops = run(operation, batch, MEASURE_NANOS);
+        long elapsed = System.nanoTime() - start;
+        long allocated = THREADS.getThreadAllocatedBytes(threadId) - allocatedBefore;
+        System.out.printf("%-24s %12d %14.1f %12.1f%n", name, size, (double) elapsed / ops, (double) allocated / ops);
+    }
+
+    // 至少运行一次，直到达到给定的时间，返回运行的次数
+    private static long run(Operation operation, int batch, long nanos) throws Exception {
+        long deadline = System.nanoTime() + nanos;
+        long ops = 0;
+        long result = 0;
+        do {
+            for (int i = 0; i < batch; i++) {
+                result += operation.run((int) ops++);
+            }
+        } while (System.nanoTime() < deadline);
+        sink = result;
+        return ops;
+    }
+
+    // 生成一个随机词典，单词长度 5 到 12，字母大致按英语字母频率分布
+    private static Path generateDictionary(int size) throws IOException {
+        Path path = Files.createTempFile("hangman-bench-" + size + "-", ".txt");
+        Random random = new Random(size);
+        char[] word = new char[12];
+        try (BufferedWriter out = Files.newBufferedWriter(path, StandardCharsets.US_ASCII)) {
+            for (int i = 0; i < size; i++) {
+                int length = 5 + random.nextInt(8);
+                for (int j = 0; j < length; j++) {
+                    word[j] = LETTERS_BY_FREQUENCY.charAt(random.nextInt(LETTERS_BY_FREQUENCY.length()));
+                }
+                out.write(word, 0, length);
+                out.write('\n');
+            }
+        }
+        return path;
+    }
+}
@@ -0,0 +1,72 @@
+// 按权重抽样的别名表（Vose 算法）：构建 O(n)，每次抽样 O(1)，只需一个 64 位随机数
+// 每个位置保存一个 32 位阈值和一个别名，共 8 字节；构建后不可变，可以被任意多个线程和玩家共享
+final class AliasTable {
+    private final int[] thresholds; // 无符号 32 位，随机数低 32 位小于它时取这个位置，否则取别名
+    private final int[] aliases;
+
+    // weights 为每个位置的权重，不能为负，至少要有一个大于 0
+    AliasTable(double[] weights) {
+        int n = weights.length;
+        thresholds = new int[n];
+        aliases = new int[n];
+        double total = 0;
+        for (double weight : weights) {
+            total += weight;
+        }
+        if (n == 0 || !(total > 0)) {
+            throw new IllegalArgumentException("权重之和必须大于 0");
+        }
+
+        // 把每个位置的概率乘以 n，小于 1 的用大于 1 的补足
+        double[] scaled = new double[n];
+        int[] small = new int[n];
+        int[] large = new int[n];
+        int smallCount = 0;
+        int largeCount = 0;
+        for (int i = 0; i < n; i++) {
+            scaled[i] = weights[i] * n / total;
+            if (scaled[i] < 1) {
+                small[smallCount++] = i;
+            } else {
+                large[largeCount++] = i;
+            }
+        }
+        while (smallCount > 0 && largeCount > 0) {
+            int less = small[--smallCount];
+            int more = large[--largeCount];
+            thresholds[less] = toThreshold(scaled[less]);
+            aliases[less] = more;
+            scaled[more] = scaled[more] + scaled[less] - 1;
+            if (scaled[more] < 1) {
+                small[smallCount++] = more;
+            } else {
+                large[largeCount++] = more;
+            }
+        }
+        // 剩下的位置概率为 1（只差浮点误差）
+        while (largeCount > 0) {
+            int i = large[--largeCount];
+            thresholds[i] = -1;
+            aliases[i] = i;
+        }
+        while (smallCount > 0) {
+            int i = small[--smallCount];
+            thresholds[i] = -1;
+            aliases[i] = i;
+        }
+    }
+
+    private static int toThreshold(double probability) {
+        return (int) Math.min(0xFFFFFFFFL, (long) (probability * 0x1p32));
+    }
+
+    int size() {
+        return thresholds.length;
+    }
+
+    // 用 64 位随机数抽出一个位置：高 32 位选列，低 32 位决定取这一列还是它的别名
+    int sample(long bits) {
+        int column = (int) (((bits >>> 32) * thresholds.length) >>> 32);
+        return (bits & 0xFFFFFFFFL) < Integer.toUnsignedLong(thresholds[column]) ? column : aliases[column];
+    }
+}
@@ -0,0 +1,138 @@
+import java.util.Arrays;
+
+// 词典使用的字母表：每个字母映射为一个从 0 开始的连续编号（字母编码），最多 MAX_LETTERS 个，
+// 因此字母集合和已猜字母都可以放在一个 long 里，按字母分组的数组也只需要字母表大小的长度
+// 字符到编码的转换是一次数组查找，大小写都可以查到，不需要先转成大写
+// 英语、俄语和希腊语的字母表是内置的，词典中的字母都属于其中一个时使用内置的字母表，编码和字母顺序固定；
+// 其他文字按词典中出现的字母生成字母表（见 detect）
+public final class Alphabet {
+    public static final int MAX_LETTERS = 64;
+
+    public static final Alphabet LATIN = new Alphabet("ABCDEFGHIJKLMNOPQRSTUVWXYZ", "ETAOINSRHLDCUMFPGWYBVKJXQZ");
+    public static final Alphabet CYRILLIC = new Alphabet("АБВГДЕЁЖЗИЙКЛМНОПРСТУФХЦЧШЩЪЫЬЭЮЯ",
+            "ОЕАИНТСРВЛКМДПУЯЫЬГЗБЧЙХЖШЮЦЩЭФЪЁ");
+    public static final Alphabet GREEK = new Alphabet("ΑΒΓΔΕΖΗΘΙΚΛΜΝΞΟΠΡΣΤΥΦΧΨΩ", "ΑΟΕΙΤΝΣΡΗΠΚΥΛΜΔΓΩΘΧΒΦΖΞΨ");
+    private static final Alphabet[] BUILT_IN = { LATIN, CYRILLIC, GREEK };
+
+    private final char[] letters; // 编码为 i 的字母（大写）
+    private final byte[] codes = new byte[Character.MAX_VALUE + 1]; // 字符 -> 编码 + 1，0 表示不在字母表中
+    private final byte[] frequencyOrder; // 按常用程度从高到低排列的编码
+
+    private Alphabet(String letters, String frequencyOrder) {
+        this.letters = letters.toCharArray();
+        if (this.letters.length == 0 || this.letters.length > MAX_LETTERS) {
+            throw new IllegalArgumentException("字母表应有 1 到 " + MAX_LETTERS + " 个字母: " + letters);
+        }
+        for (int code = 0; code < this.letters.length; code++) {
+            char letter = this.letters[code];
+            if (!Character.isLetter(letter) || codes[letter] != 0) {
+                throw new IllegalArgumentException("字母表中有重复的字母或不是字母的字符: " + letters);
+            }
+            codes[letter] = (byte) (code + 1);
+        }
+        // 同一个字母的其他大小写形式（包括希腊语词尾的 ς 这类大写相同的字母）使用同一个编码
+        for (int c = 0; c <= Character.MAX_VALUE; c++) {
+            if (codes[c] == 0) {
+                codes[c] = codes[Character.toUpperCase((char) c)];
+            }
+            if (codes[c] == 0) {
+                codes[c] = codes[Character.toLowerCase((char) c)];
+            }
+        }
+        this.frequencyOrder = new byte[this.letters.length];
+        for (int i = 0; i < this.frequencyOrder.length; i++) {
+            this.frequencyOrder[i] = (byte) indexOf(frequencyOrder.charAt(i));
+        }
+    }
+
+    // 由按编码顺序排列的字母创建字母表，字母统一转为大写；与内置的字母表相同时返回内置的字母表
+    // 转为大写后会有重复的字母（例如土耳其语的 ı 和 i 都变成 I）时保留原来的写法
+    public static Alphabet of(String letters) {
+        String upper = upperCase(letters);
+        if (upper.chars().distinct().count() == letters.chars().distinct().count()) {
+            letters = upper;
+        }
+        for (Alphabet alphabet : BUILT_IN) {
+            if (alphabet.toString().equals(letters)) {
+                return alphabet;
+            }
+        }
+        return new Alphabet(letters, letters); // 不知道常用程度，按字母表顺序
+    }
+
+    // 由词典中出现的字母选出字母表，counts[c] 为大写字母 c 出现的次数：
+    // 出现的字母都属于某个内置字母表时使用这个字母表，否则按字符顺序排列出现过的字母，
+    // 超过 MAX_LETTERS 个时只保留出现次数最多的 MAX_LETTERS 个，含有其他字母的单词不能使用
+    static Alphabet detect(int[] counts) {
+        for (Alphabet alphabet : BUILT_IN) {
+            if (alphabet.containsAll(counts)) {
+                return alphabet;
+            }
+        }
+        int seen = 0;
+        for (int count : counts) {
+            if (count > 0) {
+                seen++;
+            }
+        }
+        int minCount = 1;
+        if (seen > MAX_LETTERS) {
+            int[] sorted = counts.clone();
+            Arrays.sort(sorted);
+            minCount = sorted[sorted.length - MAX_LETTERS];
+        }
+        StringBuilder letters = new StringBuilder(MAX_LETTERS);
+        for (int c = 0; c < counts.length && letters.length() < MAX_LETTERS; c++) {
+            if (counts[c] >= minCount) {
+                letters.append((char) c);
+            }
+        }
+        return of(letters.toString());
+    }
+
+    private boolean containsAll(int[] counts) {
+        for (int c = 0; c < counts.length; c++) {
+            if (counts[c] > 0 && codes[c] == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String upperCase(String letters) {
+        char[] upper = letters.toCharArray();
+        for (int i = 0; i < upper.length; i++) {
+            upper[i] = Character.toUpperCase(upper[i]);
+        }
+        return new String(upper);
+    }
+
+    public int size() {
+        return letters.length;
+    }
+
+    // 编码为 code 的字母（大写）
+    public char letter(int code) {
+        return letters[code];
+    }
+
+    // 字母的编码，大小写均可；不在字母表中时返回 -1
+    public int indexOf(char c) {
+        return codes[c] - 1;
+    }
+
+    // 所有字母的位掩码
+    public long mask() {
+        return letters.length == 64 ? -1L : (1L << letters.length) - 1;
+    }
+
+    // 按常用程度排名第 rank 的字母编码，内置字母表按该语言的字母频率，其他字母表按字母表顺序
+    public int byFrequency(int rank) {
+        return frequencyOrder[rank];
+    }
+
+    @Override
+    public String toString() {
+        return new String(letters);
+    }
+}
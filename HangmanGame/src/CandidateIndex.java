@@ -0,0 +1,59 @@
+// 智能提示使用的位图索引，按单词长度分别建立，第一次用到某个长度时才构建，之后可被多局游戏和多个线程共享
+// 对长度为 n 的每个单词按编号分配一位（同长度的单词编号连续），每个字母（按字母编码 c）有两类位图：
+//   has[c]          包含字母 c 的单词
+//   at[c * n + p]   第 p 个位置是字母 c 的单词
+// 位图的个数取决于词典字母表的大小
+// 猜一个字母之后只需对候选位图做几次按位与，不需要重新扫描词典
+public class CandidateIndex {
+    // 一个长度的位图
+    static final class Table {
+        final int length;
+        final int firstId; // 第 0 位对应的单词编号
+        final int words;
+        final long[][] has;
+        final long[][] at;
+
+        Table(WordIndex index, int length) {
+            this.length = length;
+            this.firstId = index.firstId(length);
+            this.words = index.count(length, length);
+            int longs = (words + 63) >>> 6;
+            int letters = index.getAlphabet().size();
+            has = new long[letters][longs];
+            at = new long[letters * length][longs];
+            for (int i = 0; i < words; i++) {
+                int id = firstId + i;
+                long bit = 1L << i;
+                for (long set = index.letterSet(id); set != 0; set &= set - 1) {
+                    int c = Long.numberOfTrailingZeros(set);
+                    has[c][i >>> 6] |= bit;
+                    for (long positions = index.positions(id, 1L << c); positions != 0; positions &= positions - 1) {
+                        at[c * length + Long.numberOfTrailingZeros(positions)][i >>> 6] |= bit;
+                    }
+                }
+            }
+        }
+    }
+
+    private final WordIndex index;
+    private final Table[] tables;
+
+    public CandidateIndex(WordIndex index) {
+        this.index = index;
+        this.tables = new Table[index.maxLength() + 1];
+    }
+
+    public WordIndex getWordIndex() {
+        return index;
+    }
+
+    // 长度为 length 的位图，需要时才构建
+    synchronized Table table(int length) {
+        Table table = tables[length];
+        if (table == null) {
+            table = new Table(index, length);
+            tables[length] = table;
+        }
+        return table;
+    }
+}
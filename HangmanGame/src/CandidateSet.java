@@ -0,0 +1,106 @@
+import java.util.Arrays;
+
+// 一局游戏中仍然与已揭示的模式和猜错的字母一致的单词集合，用于智能提示
+// 每猜一个字母只对位图做按位与：猜错的字母去掉包含它的单词，猜中的字母要求它恰好出现在揭示的那些位置上
+// 已经处理过的字母记在掩码中，update 只处理新猜的字母，所以可以在每次猜测后调用，也可以等到要提示时才调用
+public class CandidateSet {
+    private CandidateIndex.Table table;
+    private Alphabet alphabet;
+    private long[] candidates = new long[0];
+    private int size;
+    private long applied; // 已经处理过的字母的位掩码，第 i 位对应编码为 i 的字母
+
+    // 开始新的一局：候选集合为同长度的所有单词
+    public void start(CandidateIndex index, int length) {
+        table = index.table(length);
+        alphabet = index.getWordIndex().getAlphabet();
+        int longs = (table.words + 63) >>> 6;
+        if (candidates.length != longs) {
+            candidates = new long[longs];
+        }
+        Arrays.fill(candidates, -1L);
+        if ((table.words & 63) != 0) {
+            candidates[longs - 1] = (1L << table.words) - 1; // 去掉最后一个 long 中多出的位
+        }
+        size = table.words;
+        applied = 0;
+    }
+
+    // 按 engine 中新猜的字母（包括提示过的字母）缩小候选集合
+    public void update(HangmanEngine engine) {
+        long pending = engine.getGuessedLetters() & ~applied;
+        for (; pending != 0; pending &= pending - 1) {
+            int c = Long.numberOfTrailingZeros(pending);
+            apply(c, engine.getRevealedPositions(alphabet.letter(c)));
+        }
+        applied = engine.getGuessedLetters();
+    }
+
+    // 字母 c 出现在且只出现在 positions 中的位置上，positions 为 0 表示单词中没有这个字母
+    private void apply(int c, long positions) {
+        long[] has = table.has[c];
+        if (positions == 0) {
+            andNot(has);
+        } else {
+            and(has);
+            int length = table.length;
+            for (int p = 0; p < length; p++) {
+                long[] at = table.at[c * length + p];
+                if ((positions & (1L << p)) != 0) {
+                    and(at);
+                } else {
+                    andNot(at);
+                }
+            }
+        }
+        size = 0;
+        for (long bits : candidates) {
+            size += Long.bitCount(bits);
+        }
+    }
+
+    private void and(long[] mask) {
+        for (int i = 0; i < candidates.length; i++) {
+            candidates[i] &= mask[i];
+        }
+    }
+
+    private void andNot(long[] mask) {
+        for (int i = 0; i < candidates.length; i++) {
+            candidates[i] &= ~mask[i];
+        }
+    }
+
+    // 剩余的候选单词数
+    public int size() {
+        return size;
+    }
+
+    // 在没猜过的字母中选出最能把候选集合分成两半的字母：包含它的单词数最接近一半；
+    // 所有字母都无法区分（例如只剩一个候选单词）时，选包含它的单词最多的字母。没有候选单词时返回 0
+    public char suggest(long guessedLetters) {
+        if (size == 0) {
+            return 0;
+        }
+        int best = -1;
+        int bestSplit = -1;
+        int bestCount = 0;
+        for (int c = 0; c < table.has.length; c++) {
+            if ((guessedLetters & (1L << c)) != 0) {
+                continue;
+            }
+            long[] has = table.has[c];
+            int count = 0;
+            for (int i = 0; i < candidates.length; i++) {
+                count += Long.bitCount(candidates[i] & has[i]);
+            }
+            int split = Math.min(count, size - count);
+            if (count > 0 && (split > bestSplit || split == bestSplit && count > bestCount)) {
+                best = c;
+                bestSplit = split;
+                bestCount = count;
+            }
+        }
+        return best < 0 ? 0 : alphabet.letter(best);
+    }
+}
@@ -0,0 +1,126 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+// 可热更新的词典：监视词典文件（文本和编译好的二进制文件），文件变化后在后台重新构建索引并原子地替换
+// 读取方只需读一次 volatile 字段，不需要加锁；正在进行的游戏持有旧索引的引用，会继续使用原来的单词
+public class Dictionary implements Closeable {
+    private static final long SETTLE_MILLIS = 200; // 文件可能分多次写入，等写入停止后再重新加载
+
+    private final Path path;
+    private volatile WordIndex current;
+    private final List<Consumer<WordIndex>> listeners = new CopyOnWriteArrayList<>();
+    private WatchService watchService;
+
+    public Dictionary(Path path) {
+        this.path = path.toAbsolutePath();
+    }
+
+    // 同步加载词典
+    public static Dictionary load(Path path) throws IOException {
+        long start = System.nanoTime();
+        Dictionary dictionary = new Dictionary(path);
+        dictionary.set(WordIndex.load(path));
+        Metrics.DICTIONARY_LOAD.recordSince(start);
+        return dictionary;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    // 当前的索引，尚未加载时为 null
+    public WordIndex current() {
+        return current;
+    }
+
+    // 替换当前索引，之后的 current() 调用立即看到新索引
+    public void set(WordIndex index) {
+        current = index;
+        for (Consumer<WordIndex> listener : listeners) {
+            listener.accept(index);
+        }
+    }
+
+    // 索引被替换时在替换它的线程中调用
+    public void addListener(Consumer<WordIndex> listener) {
+        listeners.add(listener);
+    }
+
+    // 重新构建索引并替换，失败时保留原来的索引
+    public void reload() throws IOException {
+        long start = System.nanoTime();
+        set(WordIndex.load(path));
+        Metrics.DICTIONARY_RELOAD.recordSince(start);
+    }
+
+    // 开始在后台线程中监视词典文件
+    public synchronized void watch() throws IOException {
+        if (watchService != null) {
+            return;
+        }
+        watchService = FileSystems.getDefault().newWatchService();
+        path.getParent().register(watchService,
+                StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        Thread thread = new Thread(() -> watchLoop(watchService), "dictionary-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void watchLoop(WatchService service) {
+        Path compiled = WordIndex.compiledPath(path);
+        try {
+            while (true) {
+                WatchKey key = service.take();
+                boolean changed = drain(key, compiled);
+                // 继续收集事件，直到文件一段时间内不再变化
+                while ((key = service.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+                    changed |= drain(key, compiled);
+                }
+                if (changed) {
+                    try {
+                        reload();
+                    } catch (IOException | RuntimeException e) {
+                        Metrics.RELOAD_FAILURES.increment();
+                        e.printStackTrace(); // 新文件有问题时继续使用旧词典
+                    }
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // 词典已关闭
+        }
+    }
+
+    private boolean drain(WatchKey key, Path compiled) {
+        boolean changed = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            Object context = event.context();
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                changed = true; // 丢失了事件，无法判断是哪个文件，直接重新加载
+            } else if (context instanceof Path) {
+                Path file = path.resolveSibling((Path) context);
+                changed |= file.equals(path) || file.equals(compiled);
+            }
+        }
+        key.reset();
+        return changed;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (watchService != null) {
+            watchService.close();
+            watchService = null;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+// 离线词典编译器：把文本词典编译成带版本号和校验和的二进制词典（例如 wordlist.txt -> wordlist.bin）
+// 编译时并行算好每个单词的难度分数（HardnessScorer）一起保存，游戏启动时不需要再计算
+// 游戏启动时直接映射二进制词典，不再逐行解析；文本文件修改后二进制词典会被视为过期，自动改用文本文件
+// 用法: java DictionaryCompiler [wordlist.txt]
+public class DictionaryCompiler {
+    public static void main(String[] args) throws IOException {
+        Path source = Paths.get(args.length > 0 ? args[0] : "wordlist.txt");
+        Path target = WordIndex.compiledPath(source);
+
+        long start = System.nanoTime();
+        WordIndex index = WordIndex.loadText(source);
+        compile(index, target);
+        System.out.printf("已编译 %d 个单词到 %s，用时 %d ms%n",
+                index.size(), target, (System.nanoTime() - start) / 1_000_000);
+
+        // 分别测量从文本和从二进制词典加载到开始第一轮所需的时间
+        System.out.printf("首轮就绪用时: 文本词典 %d ms，二进制词典 %d ms%n",
+                timeToFirstRound(source, false) / 1_000, timeToFirstRound(source, true) / 1_000);
+    }
+
+    // 先写入临时文件再替换，避免游戏读到写了一半的词典
+    public static void compile(WordIndex index, Path target) throws IOException {
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            index.writeTo(out);
+            out.force(true);
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // 加载词典并开始一轮中等难度的游戏，返回所用的微秒数
+    private static long timeToFirstRound(Path source, boolean compiled) throws IOException {
+        long start = System.nanoTime();
+        WordIndex index = compiled ? WordIndex.loadCompiled(source) : WordIndex.loadText(source);
+        if (index == null) {
+            throw new IOException("无法加载二进制词典: " + WordIndex.compiledPath(source));
+        }
+        Difficulty difficulty = Difficulty.MEDIUM;
+        int wordId = difficulty.pickWord(index, new Random());
+        if (wordId >= 0) {
+            new HangmanEngine().start(index, wordId, difficulty);
+        }
+        return (System.nanoTime() - start) / 1_000;
+    }
+}
@@ -0,0 +1,69 @@
+import java.util.Random;
+
+// 游戏难度：决定单词的难度区间和可用的提示次数
+// 词典算好难度分数（WordIndex.isRanked()）之后按难度排名选词，例如简单模式从最容易的三分之一单词中选；
+// 分阶段加载的词典在分数算好之前按单词长度选词
+// 提示次数用 HangmanSimulator（frequency 策略，wordlist.txt）按难度排名区间校准：每个难度两次提示时胜率约为
+// 87% / 63% / 56%；困难模式给四次提示时胜率（92%）反而高于简单模式
+public enum Difficulty {
+    EASY(5, 6, 0.0, 1 / 3.0, 2), // 简单模式，最容易的三分之一单词（或长度为5到6），最多两次提示
+    MEDIUM(7, 9, 1 / 3.0, 2 / 3.0, 2), // 中等模式，难度居中的三分之一单词（或长度为7到9），最多两次提示
+    HARD(10, Integer.MAX_VALUE, 2 / 3.0, 1.0, 2); // 困难模式，最难的三分之一单词（或长度为10及以上），最多两次提示
+
+    private final int minLength;
+    private final int maxLength;
+    private final double minRank;
+    private final double maxRank;
+    private final int maxHints;
+
+    Difficulty(int minLength, int maxLength, double minRank, double maxRank, int maxHints) {
+        this.minLength = minLength;
+        this.maxLength = maxLength;
+        this.minRank = minRank;
+        this.maxRank = maxRank;
+        this.maxHints = maxHints;
+    }
+
+    public boolean isWordLengthValid(int length) {
+        return length >= minLength && length <= maxLength;
+    }
+
+    // 词典中这个难度的单词是否已经可以选用
+    public boolean isReady(WordIndex index) {
+        return index.isRanked() || index.isReady(minLength, maxLength);
+    }
+
+    // 随机选出这个难度的一个单词，O(1)；没有符合条件的单词时返回 -1
+    public int pickWord(WordIndex index, Random random) {
+        if (index.isRanked()) {
+            return index.pickByHardness(minRank, maxRank, random);
+        }
+        return index.pick(minLength, maxLength, random);
+    }
+
+    // 这个难度的单词可以看作一段连续的位置 [bandStart, bandEnd)：词典算好难度分数时是难度名次，否则是单词编号；
+    // 用 wordAt 把位置换算成单词编号，WordScheduler 用它为每个难度建立自己的抽取表
+    public int bandStart(WordIndex index) {
+        return index.isRanked() ? index.rankStart(minRank) : index.firstId(minLength);
+    }
+
+    public int bandEnd(WordIndex index) {
+        return index.isRanked() ? index.rankStart(maxRank) : index.firstId(minLength) + index.count(minLength, maxLength);
+    }
+
+    public static int wordAt(WordIndex index, int position) {
+        return index.isRanked() ? index.rankedId(position) : position;
+    }
+
+    public int getMinLength() {
+        return minLength;
+    }
+
+    public int getMaxLength() {
+        return maxLength;
+    }
+
+    public int getMaxHints() {
+        return maxHints;
+    }
+}
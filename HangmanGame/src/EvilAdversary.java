@@ -0,0 +1,236 @@
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// 邪恶模式的对手：保存仍然与已揭示的模式一致的所有单词，每猜一个字母就按这个字母的揭示模式分组，只保留最大的一组
+// 由于组内单词对之前猜过的字母的揭示位置都相同，新的揭示模式只取决于新字母的位置掩码（long，0 表示猜错），
+// 分组时直接以位置掩码为键，用开放寻址的 long -> int 哈希表计数
+// 每个长度的单词的字母和字母集合在 WordIndex 中只复制一份（见 WordIndex.LengthBucket），所有会话只读共享，
+// 每个会话只保存一个候选单词的位集合；猜字母时按位集合顺序扫描共享的数组，不再逐个读取词典映像
+// 计数用的哈希表和每个候选单词的揭示模式只在一次猜测中使用，从一个大小约为处理器数两倍的池中借用，用完归还：
+// 不按线程保存（服务器每个连接一个虚拟线程，按线程保存时每个玩过邪恶模式的连接都会占着一份）；
+// 同时猜测的线程多于池的大小时临时分配，归还时池已满就丢弃。池中有空闲时猜字母不分配对象
+final class EvilAdversary {
+    private static final int MIN_TABLE_SIZE = 1024;
+    private static final int POOL_SIZE = Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 4 - 1);
+    private static final AtomicReferenceArray<PatternCounts> POOL = new AtomicReferenceArray<>(POOL_SIZE);
+
+    private WordIndex.LengthBucket bucket;
+    private long[] candidates = new long[0]; // 候选单词的位集合，第 i 位对应这个长度的第 i 个单词，在各局之间复用
+    private int firstWord; // candidates 中第一个非零的 long
+    private int endWord; // candidates 中最后一个非零的 long 之后的位置
+    private int size;
+
+    // 候选集合为长度为 length 的所有单词
+    void start(WordIndex index, int length) {
+        bucket = index.bucket(length);
+        int count = bucket.count;
+        int words = (count + 63) >>> 6;
+        if (candidates.length < words) {
+            candidates = new long[words];
+        }
+        for (int w = 0; w < words; w++) {
+            int remaining = count - (w << 6);
+            candidates[w] = remaining >= 64 ? -1L : (1L << remaining) - 1;
+        }
+        firstWord = 0;
+        endWord = words;
+        size = count;
+    }
+
+    int size() {
+        return size;
+    }
+
+    // 按字母 letterBit 的揭示模式给候选单词分组，只保留最大的一组，返回组内的一个单词编号作为当前单词
+    // 同样大时优先保留猜错的一组，其次是揭示位置较少的一组
+    int choose(long letterBit) {
+        int home = System.identityHashCode(Thread.currentThread()); // 同一个线程总是先试同一个位置
+        PatternCounts counts = borrow(home);
+        try {
+            return choose(letterBit, counts);
+        } finally {
+            counts.clear();
+            release(home, counts);
+        }
+    }
+
+    private int choose(long letterBit, PatternCounts counts) {
+        long[] patterns = counts.patterns(size);
+        byte letter = (byte) Long.numberOfTrailingZeros(letterBit);
+        long[] candidates = this.candidates;
+        long[] letterSets = bucket.letterSets;
+        int k = 0;
+        int misses = 0; // 猜错的一组单独计数，不经过哈希表
+        long best = 0;
+        int bestCount = 0;
+        for (int w = firstWord; w < endWord; w++) {
+            for (long bits = candidates[w]; bits != 0; bits &= bits - 1) {
+                int i = (w << 6) + Long.numberOfTrailingZeros(bits);
+                if ((letterSets[i] & letterBit) == 0) {
+                    patterns[k++] = 0;
+                    misses++;
+                    continue;
+                }
+                long pattern = pattern(i, letter);
+                patterns[k++] = pattern;
+                int count = counts.increment(pattern);
+                if (count > bestCount || count == bestCount && isPreferred(pattern, best)) {
+                    best = pattern;
+                    bestCount = count;
+                }
+            }
+        }
+        return retain(letterBit, misses >= bestCount ? 0 : best, patterns);
+    }
+
+    // 只保留字母 letterBit 恰好出现在 positions 上的单词（提示揭示了这些位置），返回组内的一个单词编号
+    int keep(long letterBit, long positions) {
+        return retain(letterBit, positions, null);
+    }
+
+    // 字母在这个长度的第 word 个单词中的位置掩码
+    private long pattern(int word, byte letter) {
+        byte[] letters = bucket.letters;
+        int length = bucket.length;
+        int offset = word * length;
+        long pattern = 0;
+        for (int p = 0; p < length; p++) {
+            if (letters[offset + p] == letter) {
+                pattern |= 1L << p;
+            }
+        }
+        return pattern;
+    }
+
+    // 从 home 开始找池中空闲的哈希表，都被借走时分配一个新的
+    private static PatternCounts borrow(int home) {
+        for (int i = 0; i < POOL_SIZE; i++) {
+            int slot = (home + i) & (POOL_SIZE - 1);
+            PatternCounts counts = POOL.get(slot);
+            if (counts != null && POOL.compareAndSet(slot, counts, null)) {
+                return counts;
+            }
+        }
+        return new PatternCounts();
+    }
+
+    // 把已清空的哈希表放回池中的空位，池已满时丢弃
+    private static void release(int home, PatternCounts counts) {
+        for (int i = 0; i < POOL_SIZE; i++) {
+            if (POOL.compareAndSet((home + i) & (POOL_SIZE - 1), null, counts)) {
+                return;
+            }
+        }
+    }
+
+    private static boolean isPreferred(long pattern, long best) {
+        int bits = Long.bitCount(pattern);
+        int bestBits = Long.bitCount(best);
+        return bits < bestBits || bits == bestBits && Long.compareUnsigned(pattern, best) < 0;
+    }
+
+    // 只保留字母 letterBit 的揭示模式为 pattern 的候选单词；patterns 为 choose() 按扫描顺序算好的揭示模式，
+    // 为 null 时重新计算
+    private int retain(long letterBit, long pattern, long[] patterns) {
+        byte letter = (byte) Long.numberOfTrailingZeros(letterBit);
+        long[] candidates = this.candidates;
+        long[] letterSets = bucket.letterSets;
+        int k = 0;
+        int kept = 0;
+        int first = -1;
+        int end = firstWord;
+        for (int w = firstWord; w < endWord; w++) {
+            long keep = 0;
+            for (long bits = candidates[w]; bits != 0; bits &= bits - 1) {
+                int bit = Long.numberOfTrailingZeros(bits);
+                int i = (w << 6) + bit;
+                long p = patterns != null ? patterns[k++] : (letterSets[i] & letterBit) == 0 ? 0 : pattern(i, letter);
+                if (p == pattern) {
+                    keep |= 1L << bit;
+                }
+            }
+            candidates[w] = keep;
+            if (keep != 0) {
+                kept += Long.bitCount(keep);
+                if (first < 0) {
+                    first = w;
+                }
+                end = w + 1;
+            }
+        }
+        firstWord = first;
+        endWord = end;
+        size = kept;
+        return bucket.firstId + (first << 6) + Long.numberOfTrailingZeros(candidates[first]);
+    }
+
+    // 揭示模式 -> 单词数的哈希表，counts 为 0 表示空槽
+    private static final class PatternCounts {
+        private long[] keys = new long[MIN_TABLE_SIZE];
+        private int[] counts = new int[MIN_TABLE_SIZE];
+        private int[] usedSlots = new int[MIN_TABLE_SIZE / 2]; // 用过的槽，清空时只重置这些槽；装满时扩容
+        private int used;
+        private long[] patterns = new long[0];
+
+        // 至少能放下 size 个揭示模式的数组
+        long[] patterns(int size) {
+            if (patterns.length < size) {
+                patterns = new long[size];
+            }
+            return patterns;
+        }
+
+        // 给 key 的计数加一并返回新的计数
+        int increment(long key) {
+            int mask = keys.length - 1;
+            int slot = hash(key) & mask;
+            while (counts[slot] != 0) {
+                if (keys[slot] == key) {
+                    return ++counts[slot];
+                }
+                slot = (slot + 1) & mask;
+            }
+            if (used == usedSlots.length) {
+                grow(); // 装载因子达到一半，扩容之后在新表中插入
+                return increment(key);
+            }
+            keys[slot] = key;
+            counts[slot] = 1;
+            usedSlots[used++] = slot;
+            return 1;
+        }
+
+        private static int hash(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            int[] oldCounts = counts;
+            int[] oldSlots = usedSlots;
+            int oldUsed = used;
+            keys = new long[oldKeys.length * 2];
+            counts = new int[oldKeys.length * 2];
+            usedSlots = new int[oldKeys.length];
+            used = 0;
+            int mask = keys.length - 1;
+            for (int i = 0; i < oldUsed; i++) {
+                int from = oldSlots[i];
+                int slot = hash(oldKeys[from]) & mask;
+                while (counts[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[from];
+                counts[slot] = oldCounts[from];
+                usedSlots[used++] = slot;
+            }
+        }
+
+        void clear() {
+            for (int i = 0; i < used; i++) {
+                counts[usedSlots[i]] = 0;
+            }
+            used = 0;
+        }
+    }
+}
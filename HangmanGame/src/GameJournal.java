@@ -0,0 +1,509 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+// 游戏事件日志：新的一轮、猜字母、提示和放弃都作为紧凑的二进制记录追加到日志文件末尾，用于审计和崩溃后恢复
+// 追加记录只是在内存缓冲区中写几十个字节；后台的写线程把积攒的记录一次写出并 fsync（组提交），
+// 负载越高每次提交的记录越多，不会每猜一个字母就 fsync 一次
+// 需要确认记录已经落盘的调用方（服务器在回复之前）用 awaitDurable 等待包含该记录的那次提交
+// 写出失败或关闭之后日志不再接受记录：追加的记录被丢弃（只计数），返回 DROPPED，awaitDurable 对它抛出异常
+// 锁使用 ReentrantLock 而不是 synchronized，虚拟线程等待时不会占住载体线程
+//
+// 文件格式（小端序）：文件头 MAGIC、VERSION，之后是连续的记录，每条记录为
+//   crc(4) size(2) type(1) arg(1) session(8) time(8) [内容]
+// crc 为 size 开始到记录末尾的 CRC32，time 为 System.currentTimeMillis()；字母都是 char(2)，与词典的文字无关。
+// 各类记录的 arg 和内容：
+//   NEW_GAME  arg = 难度 | 模式 << 4，内容为 wordId(4) 词典校验和(8) 单词长度(1) 单词的字母
+//   GUESS     内容为字母(2) guess() 的结果(1)
+//   HINT      内容为提示的字母(2)，0 表示只消耗一次提示（智能提示）
+//   GIVE_UP   没有内容
+// 崩溃时最后一条记录可能只写了一半，读取时在第一条校验失败的记录处停止，打开日志追加时截掉这部分
+// 读取时按 READ_CHUNK 分段映射文件，日志可以超过 2 GB
+// 打开旧版本的日志追加时，旧文件改名为 <文件名>.v<版本> 保留，重新开始一个日志
+// 追加的进程对整个文件持有排他锁，直到关闭：同一个文件同时只有一个进程追加，
+// 不会覆盖其他进程的记录，也不会把其他进程写了一半的提交当作不完整的记录截掉。
+// 关闭同一个文件的任何 channel 都可能释放本进程在这个文件上的锁，所以本进程中正在追加的日志另外记在 APPENDING 中，
+// 再次打开时不碰文件直接失败
+public class GameJournal implements Closeable {
+    static final int MAGIC = 0x4C4E4A48; // "HJNL"
+    static final int VERSION = 2;
+    static final int FILE_HEADER_SIZE = 8;
+    static final int RECORD_HEADER_SIZE = 24;
+    static final long DROPPED = Long.MAX_VALUE; // 日志不可用时追加方法返回的序号，永远不会落盘
+
+    // 记录类型
+    static final byte NEW_GAME = 1;
+    static final byte GUESS = 2;
+    static final byte HINT = 3;
+    static final byte GIVE_UP = 4;
+
+    private static final int INITIAL_BUFFER = 64 << 10;
+    private static final int MAX_BUFFER = 4 << 20; // 写线程跟不上时，缓冲区超过这个大小后追加方等待下一次提交
+    private static final int MAX_RECORD_SIZE = 0xFFFF; // 记录头中的 size 只有两个字节
+    private static final int READ_CHUNK = 256 << 20; // 读取日志时每次映射的大小
+    private static final Difficulty[] DIFFICULTIES = Difficulty.values();
+    private static final GameMode[] MODES = GameMode.values();
+    private static final Set<Path> APPENDING = ConcurrentHashMap.newKeySet(); // 本进程中正在追加的日志文件
+
+    // 读取日志时按顺序收到的事件
+    public interface Visitor {
+        void newGame(long session, long time, Difficulty difficulty, GameMode mode, int wordId, long checksum, String word);
+
+        void guess(long session, long time, char letter, int result);
+
+        void hint(long session, long time, char letter);
+
+        void giveUp(long session, long time);
+    }
+
+    private final Path path;
+    private final FileChannel channel;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition pendingRecords = lock.newCondition(); // 写线程等待新记录
+    private final Condition committed = lock.newCondition(); // 追加方等待提交完成
+    private final CRC32 crc = new CRC32(); // 只在持有锁时使用
+    private final byte[] word = new byte[WordIndex.MAX_WORD_LENGTH]; // 单词的字母编码，只在持有锁时使用
+    private final Thread writer;
+    private ByteBuffer pending = newBuffer(INITIAL_BUFFER); // 尚未写出的记录
+    private ByteBuffer writing = newBuffer(INITIAL_BUFFER); // 写线程正在写出的记录
+    private int recordStart; // 正在追加的记录在 pending 中的位置
+    private long appended; // 已追加的记录数，也是最后一条记录的序号
+    private long durable; // 已经落盘的记录数
+    private long commits;
+    private boolean writerWaiting;
+    private long dropped; // 日志不可用之后被丢弃的记录数
+    private boolean closed;
+    private boolean stopped; // 写线程已经退出，之后不会再有记录落盘
+    private IOException failure; // 写出失败后日志不再可用
+
+    private GameJournal(Path path, FileChannel channel) {
+        this.path = path;
+        this.channel = channel;
+        this.writer = new Thread(this::writeLoop, "journal-writer");
+        writer.setDaemon(true);
+    }
+
+    // 打开日志准备追加，文件不存在时创建；末尾写了一半的记录被截掉
+    // 其他进程（或本进程中另一个 GameJournal）正在追加这个文件时抛出 IOException
+    public static GameJournal open(Path path) throws IOException {
+        if (!APPENDING.add(path.toAbsolutePath().normalize())) {
+            throw new IOException("事件日志 " + path + " 已经打开");
+        }
+        try {
+            return append(path);
+        } catch (IOException | RuntimeException e) {
+            APPENDING.remove(path.toAbsolutePath().normalize());
+            throw e;
+        }
+    }
+
+    private static GameJournal append(Path path) throws IOException {
+        int version = Files.isRegularFile(path) && Files.size(path) > 0 ? version(path) : VERSION;
+        if (version >= 0 && version != VERSION) {
+            Path old = path.resolveSibling(path.getFileName() + ".v" + version);
+            Files.move(path, old, StandardCopyOption.REPLACE_EXISTING);
+            System.err.printf("事件日志 %s 是旧的格式（版本 %d），已改名为 %s%n", path, version, old);
+        }
+        FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            lock(channel, path); // 先取得锁，再写文件头或者截掉末尾
+            if (channel.size() == 0) {
+                ByteBuffer header = newBuffer(FILE_HEADER_SIZE);
+                header.putInt(MAGIC).putInt(VERSION).flip();
+                while (header.hasRemaining()) {
+                    channel.write(header);
+                }
+                channel.force(true);
+            } else {
+                long end = validEnd(channel);
+                if (end < channel.size()) {
+                    System.err.printf("事件日志 %s 末尾有 %d 字节不完整的记录，已截掉%n", path, channel.size() - end);
+                    channel.truncate(end);
+                    channel.force(true);
+                }
+            }
+            channel.position(channel.size());
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        GameJournal journal = new GameJournal(path, channel);
+        journal.writer.start();
+        return journal;
+    }
+
+    // 取得整个文件的排他锁，关闭 channel 时释放
+    private static void lock(FileChannel channel, Path path) throws IOException {
+        FileLock lock;
+        try {
+            lock = channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            lock = null; // 本进程中以其他路径打开了同一个文件
+        }
+        if (lock == null) {
+            throw new IOException("事件日志 " + path + " 正被其他进程使用");
+        }
+    }
+
+    // 日志文件的格式版本，不是事件日志文件时返回 -1
+    static int version(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = newBuffer(FILE_HEADER_SIZE);
+            channel.read(header, 0);
+            return header.hasRemaining() || header.getInt(0) != MAGIC ? -1 : header.getInt(4);
+        }
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    // 以下方法追加一条记录，返回它的序号，把序号传给 awaitDurable 可以等待它落盘；日志不可用时返回 DROPPED
+
+    public long newGame(long session, WordIndex index, int wordId, Difficulty difficulty, GameMode mode) {
+        int length = index.length(wordId);
+        lock.lock();
+        try {
+            ByteBuffer buffer = begin(RECORD_HEADER_SIZE + 13 + 2 * length, NEW_GAME,
+                    difficulty.ordinal() | mode.ordinal() << 4, session);
+            if (buffer == null) {
+                return DROPPED;
+            }
+            index.getLetters(wordId, 1, word);
+            buffer.putInt(wordId).putLong(index.checksum()).put((byte) length);
+            Alphabet alphabet = index.getAlphabet();
+            for (int i = 0; i < length; i++) {
+                buffer.putChar(alphabet.letter(word[i]));
+            }
+            return end(buffer);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long guess(long session, char letter, int result) {
+        lock.lock();
+        try {
+            ByteBuffer buffer = begin(RECORD_HEADER_SIZE + 3, GUESS, 0, session);
+            if (buffer == null) {
+                return DROPPED;
+            }
+            buffer.putChar(letter).put((byte) result);
+            return end(buffer);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long hint(long session, char letter) {
+        lock.lock();
+        try {
+            ByteBuffer buffer = begin(RECORD_HEADER_SIZE + 2, HINT, 0, session);
+            if (buffer == null) {
+                return DROPPED;
+            }
+            buffer.putChar(letter);
+            return end(buffer);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long giveUp(long session) {
+        lock.lock();
+        try {
+            ByteBuffer buffer = begin(RECORD_HEADER_SIZE, GIVE_UP, 0, session);
+            return buffer == null ? DROPPED : end(buffer);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // 在 pending 中写好记录头（crc 稍后填写），返回 pending；日志写出失败或已经关闭时丢弃这条记录，返回 null
+    // 缓冲区满时等待写线程取走它，写线程在等待期间失败或退出时同样丢弃，不会一直等下去
+    private ByteBuffer begin(int size, byte type, int arg, long session) {
+        while (pending.remaining() < size || failure != null || closed) {
+            if (failure != null || closed) {
+                dropped++;
+                return null;
+            }
+            if (pending.capacity() < MAX_BUFFER) {
+                ByteBuffer larger = newBuffer(pending.capacity() * 2);
+                pending.flip();
+                larger.put(pending);
+                pending = larger;
+            } else {
+                committed.awaitUninterruptibly(); // 背压：等写线程取走当前的缓冲区
+            }
+        }
+        ByteBuffer buffer = pending;
+        recordStart = buffer.position();
+        buffer.putInt(0).putShort((short) size).put(type).put((byte) arg)
+                .putLong(session).putLong(System.currentTimeMillis());
+        return buffer;
+    }
+
+    // 填写 crc，必要时唤醒写线程，返回记录的序号
+    private long end(ByteBuffer buffer) {
+        crc.reset();
+        crc.update(buffer.array(), recordStart + 4, buffer.position() - recordStart - 4);
+        buffer.putInt(recordStart, (int) crc.getValue());
+        if (writerWaiting) {
+            writerWaiting = false;
+            pendingRecords.signal();
+        }
+        return ++appended;
+    }
+
+    // 等待序号不大于 sequence 的记录全部落盘，日志写出失败时抛出异常
+    public void awaitDurable(long sequence) throws IOException {
+        lock.lock();
+        try {
+            while (durable < sequence && failure == null && !stopped) {
+                committed.awaitUninterruptibly();
+            }
+            if (durable < sequence) {
+                throw new IOException((failure != null ? "事件日志写入失败: " : "事件日志已关闭: ") + path, failure);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // 已追加的记录数
+    public long getRecords() {
+        lock.lock();
+        try {
+            return appended;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // 日志写出失败或关闭之后被丢弃的记录数
+    public long getDropped() {
+        lock.lock();
+        try {
+            return dropped;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // 提交（write + fsync）的次数，getRecords() / getCommits() 为平均每次提交的记录数
+    public long getCommits() {
+        lock.lock();
+        try {
+            return commits;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // 写线程：取走积攒的所有记录，一次写出并 fsync，然后通知等待的追加方
+    private void writeLoop() {
+        while (true) {
+            ByteBuffer batch;
+            long sequence;
+            lock.lock();
+            try {
+                while (pending.position() == 0 && !closed) {
+                    writerWaiting = true;
+                    pendingRecords.awaitUninterruptibly();
+                }
+                if (pending.position() == 0) {
+                    stopped = true; // 已关闭并且全部写出
+                    committed.signalAll();
+                    return;
+                }
+                batch = pending;
+                pending = writing;
+                writing = batch;
+                sequence = appended;
+            } finally {
+                lock.unlock();
+            }
+
+            IOException error = null;
+            try {
+                batch.flip();
+                while (batch.hasRemaining()) {
+                    channel.write(batch);
+                }
+                channel.force(false);
+            } catch (IOException e) {
+                error = e;
+            }
+            batch.clear();
+
+            lock.lock();
+            try {
+                if (error != null) {
+                    failure = error;
+                    stopped = true;
+                    System.err.println("事件日志写入失败: " + error);
+                } else {
+                    durable = sequence;
+                    commits++;
+                }
+                committed.signalAll();
+                if (error != null) {
+                    return;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    // 写出剩余的记录后关闭文件，同时释放文件锁
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            writerWaiting = false;
+            pendingRecords.signal();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+        APPENDING.remove(path.toAbsolutePath().normalize());
+    }
+
+    // 依次读出日志文件中的事件，在第一条不完整或校验失败的记录处停止，返回有效内容的结束位置；文件头不对时抛出异常
+    public static long read(FileChannel channel, Visitor visitor) throws IOException {
+        return read(channel, visitor, READ_CHUNK);
+    }
+
+    // 每次映射 chunk 字节（必须大于 MAX_RECORD_SIZE）；一段末尾的记录不完整时，从这条记录开始映射下一段
+    static long read(FileChannel channel, Visitor visitor, int chunk) throws IOException {
+        long size = channel.size();
+        long base = 0;
+        int offset = FILE_HEADER_SIZE;
+        while (true) {
+            int length = (int) Math.min(chunk, size - base);
+            ByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, base, length).order(ByteOrder.LITTLE_ENDIAN);
+            if (base == 0 && (length < FILE_HEADER_SIZE || in.getInt(0) != MAGIC || in.getInt(4) != VERSION)) {
+                throw new IOException("不是事件日志文件");
+            }
+            int end = readRecords(in, offset, visitor);
+            if (base + length == size || end < length - MAX_RECORD_SIZE) {
+                return base + end; // 文件末尾，或者在一段的中间遇到了损坏的记录
+            }
+            base += end;
+            offset = 0;
+        }
+    }
+
+    // 从 offset 开始依次读出 in 中的记录，返回第一条不完整或校验失败的记录的位置
+    private static int readRecords(ByteBuffer in, int offset, Visitor visitor) {
+        ByteBuffer body = in.duplicate(); // 计算校验和时移动的是它的位置，不影响 in
+        CRC32 crc = new CRC32();
+        char[] word = new char[WordIndex.MAX_WORD_LENGTH];
+        int limit = in.limit();
+        while (limit - offset >= RECORD_HEADER_SIZE) {
+            int size = in.getShort(offset + 4) & 0xFFFF;
+            if (size < RECORD_HEADER_SIZE || size > limit - offset) {
+                break;
+            }
+            body.limit(offset + size).position(offset + 4);
+            crc.reset();
+            crc.update(body);
+            if ((int) crc.getValue() != in.getInt(offset)) {
+                break;
+            }
+            byte type = in.get(offset + 6);
+            int arg = in.get(offset + 7) & 0xFF;
+            long session = in.getLong(offset + 8);
+            long time = in.getLong(offset + 16);
+            int content = offset + RECORD_HEADER_SIZE;
+            switch (type) {
+                case NEW_GAME: {
+                    int length = in.get(content + 12) & 0xFF;
+                    if (size != RECORD_HEADER_SIZE + 13 + 2 * length || length > word.length
+                            || (arg & 15) >= DIFFICULTIES.length || arg >> 4 >= MODES.length) {
+                        return offset;
+                    }
+                    for (int i = 0; i < length; i++) {
+                        word[i] = in.getChar(content + 13 + 2 * i);
+                    }
+                    visitor.newGame(session, time, DIFFICULTIES[arg & 15], MODES[arg >> 4], in.getInt(content),
+                            in.getLong(content + 4), new String(word, 0, length));
+                    break;
+                }
+                case GUESS:
+                    if (size != RECORD_HEADER_SIZE + 3) {
+                        return offset;
+                    }
+                    visitor.guess(session, time, in.getChar(content), in.get(content + 2));
+                    break;
+                case HINT:
+                    if (size != RECORD_HEADER_SIZE + 2) {
+                        return offset;
+                    }
+                    visitor.hint(session, time, in.getChar(content));
+                    break;
+                case GIVE_UP:
+                    visitor.giveUp(session, time);
+                    break;
+                default:
+                    return offset; // 未知的记录类型，当作损坏处理
+            }
+            offset += size;
+        }
+        return offset;
+    }
+
+    // 有效内容的结束位置，只检查不解析
+    private static long validEnd(FileChannel channel) throws IOException {
+        return read(channel, IGNORE);
+    }
+
+    private static final Visitor IGNORE = new Visitor() {
+        @Override
+        public void newGame(long session, long time, Difficulty difficulty, GameMode mode, int wordId, long checksum,
+                            String word) {
+        }
+
+        @Override
+        public void guess(long session, long time, char letter, int result) {
+        }
+
+        @Override
+        public void hint(long session, long time, char letter) {
+        }
+
+        @Override
+        public void giveUp(long session, long time) {
+        }
+    };
+
+    // 记录缓冲区使用堆内存，计算校验和时可以直接访问底层数组
+    private static ByteBuffer newBuffer(int capacity) {
+        return ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN);
+    }
+}
@@ -0,0 +1,5 @@
+// 游戏模式，与 Difficulty 一起在开始新的一轮时选择
+public enum GameMode {
+    NORMAL, // 普通模式，开局时就确定单词
+    EVIL // 邪恶模式，单词不固定，每次猜测后保留与揭示模式相同的最大一组单词
+}
@@ -0,0 +1,338 @@
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// 多人房间：房间内的所有玩家同时猜同一个单词，已猜的字母和错误次数由整个房间共享
+// 一轮的状态是不可变的 State 对象，猜字母时算出新状态后用 CAS 整体替换，不需要房间锁：
+// 两个玩家同时猜同一个字母时只有一个 CAS 成功，另一个重试时看到字母已经猜过，得到 ALREADY_GUESSED，只算一次猜测
+// 每次状态变化编码成一个 Event（一行 UTF-8 文本），放进按版本号索引的环形数组 history，房间内所有成员共享；
+// 推送只是通知成员有新事件，成员自己按版本号顺序从 history 中读取和写出，猜字母的线程不会被慢的成员阻塞。
+// 多个线程同时猜中时发布的先后不一定与版本号一致，按版本号读取保证每个成员看到的事件顺序相同
+// 观众（watch）不需要每个事件，只看最新的完整画面：有观众时每个版本编码一次 Snapshot（状态和最近的消息），
+// 所有观众共享同一个字节数组；观众跟不上时直接跳到最新的快照，每个观众占用的内存与落后多少无关
+// 房间的游戏不写入事件日志，也不计入玩家统计
+public final class GameRoom {
+    public static final int HISTORY = 64; // 保留最近的事件数（2 的幂），落后更多的成员跳过中间的事件
+    public static final int LOG_SIZE = 8; // 快照中的消息条数
+
+    private final String name;
+    private final Difficulty difficulty;
+    private final AtomicReference<State> state = new AtomicReference<>();
+    private final CopyOnWriteArrayList<Member> members = new CopyOnWriteArrayList<>(); // 加入和离开很少，推送时遍历不加锁
+    private final CopyOnWriteArrayList<Member> spectators = new CopyOnWriteArrayList<>();
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>(); // 最新的快照，只在有观众时更新
+    private final LongAdder guesses = new LongAdder(); // 成功的猜测（CAS 成功）次数
+    private final LongAdder retries = new LongAdder(); // 因为其他玩家同时修改了状态而重试 CAS 的次数
+    private final AtomicReferenceArray<Event> history = new AtomicReferenceArray<>(HISTORY); // 版本 v 在 v % HISTORY
+
+    // 房间成员或观众，changed 在修改状态的线程中调用，不能阻塞
+    public interface Member {
+        // 有新的事件（见 event()）或快照（见 snapshot()）可以读取
+        void changed();
+    }
+
+    // 一次状态变化，version 逐次加一
+    public static final class Event {
+        private final long version;
+        private final byte[] bytes;
+
+        Event(long version, byte[] bytes) {
+            this.version = version;
+            this.bytes = bytes;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        // 推送给客户端的一行 UTF-8 文本（含换行），所有成员共享，不能修改
+        public byte[] getBytes() {
+            return bytes;
+        }
+    }
+
+    // 某个版本的完整画面，格式为
+    //   SNAPSHOT <房间> <版本> <状态>
+    //   LOG <版本> <变化>      （最近的 LOG_SIZE 条，从旧到新）
+    //   END
+    public static final class Snapshot {
+        private final long version;
+        private final byte[] bytes;
+
+        Snapshot(long version, byte[] bytes) {
+            this.version = version;
+            this.bytes = bytes;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        // 推送给客户端的 UTF-8 文本（含换行），所有观众共享，不能修改
+        public byte[] getBytes() {
+            return bytes;
+        }
+    }
+
+    // 一轮游戏的状态，创建后不再修改；规则与 HangmanEngine 相同（没有提示和邪恶模式）
+    // log 是最近几次变化的说明，最后一条就是产生这个状态的变化，新状态复制旧的数组再追加一条
+    public static final class State {
+        final WordIndex index;
+        final int wordId;
+        final long version;
+        final long guessedLetters; // 已猜字母的位掩码，第 i 位对应编码为 i 的字母
+        final long revealedPositions;
+        final int revealed; // 已揭示的不同字母个数
+        final int errors;
+        final String[] log; // 最近的变化，从旧到新，最后一条的版本为 version
+
+        State(WordIndex index, int wordId, long version, long guessedLetters, long revealedPositions, int revealed,
+              int errors, String[] previousLog, String change) {
+            this.index = index;
+            this.wordId = wordId;
+            this.version = version;
+            this.guessedLetters = guessedLetters;
+            this.revealedPositions = revealedPositions;
+            this.revealed = revealed;
+            this.errors = errors;
+            int kept = Math.min(previousLog.length, LOG_SIZE - 1);
+            this.log = new String[kept + 1];
+            System.arraycopy(previousLog, previousLog.length - kept, log, 0, kept);
+            log[kept] = change;
+        }
+
+        // 玩家 player 猜 letterBit 对应的字母（letter）之后的状态，调用方保证这个字母还没有猜过并且本轮没有结束
+        State guess(long letterBit, char letter, long player) {
+            long positions = index.positions(wordId, letterBit);
+            int nextRevealed = positions != 0 ? revealed + 1 : revealed;
+            int nextErrors = positions != 0 ? errors : errors + 1;
+            int result = positions != 0
+                    ? (nextRevealed == index.distinctLetters(wordId) ? HangmanEngine.WON : HangmanEngine.HIT)
+                    : (nextErrors >= HangmanEngine.MAX_ERRORS ? HangmanEngine.LOST : HangmanEngine.MISS);
+            return new State(index, wordId, version + 1, guessedLetters | letterBit, revealedPositions | positions,
+                    nextRevealed, nextErrors, log, "GUESS " + player + ' ' + letter + ' ' + resultName(result));
+        }
+
+        // 产生这个状态的变化
+        public String getChange() {
+            return log[log.length - 1];
+        }
+
+        public boolean isWon() {
+            return revealed == index.distinctLetters(wordId);
+        }
+
+        public boolean isLost() {
+            return errors >= HangmanEngine.MAX_ERRORS;
+        }
+
+        public boolean isOver() {
+            return isWon() || isLost();
+        }
+
+        public int getErrors() {
+            return errors;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public Alphabet getAlphabet() {
+            return index.getAlphabet();
+        }
+
+        // 追加 "<单词模式> <错误次数>/<最大错误次数> <PLAYING|WON|LOST> [单词]"，与单人游戏的状态格式一致（没有提示次数）
+        public void appendTo(StringBuilder out) {
+            int length = index.length(wordId);
+            boolean over = isOver();
+            for (int i = 0; i < length; i++) {
+                out.append(over || (revealedPositions & (1L << i)) != 0 ? index.letterAt(wordId, i) : '_');
+            }
+            out.append(' ').append(errors).append('/').append(HangmanEngine.MAX_ERRORS)
+                    .append(isWon() ? " WON " : isLost() ? " LOST " : " PLAYING");
+            if (over) {
+                out.append(index.word(wordId));
+            }
+        }
+    }
+
+    public GameRoom(String name, Difficulty difficulty) {
+        this.name = name;
+        this.difficulty = difficulty;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Difficulty getDifficulty() {
+        return difficulty;
+    }
+
+    // 当前这一轮的状态，还没有开始过时为 null
+    public State getState() {
+        return state.get();
+    }
+
+    public void join(Member member) {
+        members.add(member);
+    }
+
+    public void leave(Member member) {
+        members.remove(member);
+    }
+
+    // 以观众身份加入，之后通过 snapshot() 读取最新的画面
+    public void watch(Member spectator) {
+        spectators.add(spectator);
+        State current = state.get();
+        if (current != null) {
+            updateSnapshot(current); // 没有观众时不编码快照，这里补上当前版本的
+        }
+    }
+
+    public void unwatch(Member spectator) {
+        spectators.remove(spectator);
+    }
+
+    // 没有玩家也没有观众
+    public boolean isEmpty() {
+        return members.isEmpty() && spectators.isEmpty();
+    }
+
+    // 玩家人数
+    public int size() {
+        return members.size();
+    }
+
+    public int getSpectatorCount() {
+        return spectators.size();
+    }
+
+    public long getGuesses() {
+        return guesses.sum();
+    }
+
+    public long getRetries() {
+        return retries.sum();
+    }
+
+    // 上一轮已经结束（或者还没有开始过）时用 index 中的一个新单词开始新的一轮，返回 false 表示这一轮还在进行或者没有单词
+    // 多个玩家同时开始时只有一个成功，其他人看到的是已经开始的新一轮
+    public boolean nextRound(WordIndex index, long player) {
+        State current = state.get();
+        if (current != null && !current.isOver()) {
+            return false;
+        }
+        int wordId = difficulty.pickWord(index, ThreadLocalRandom.current());
+        if (wordId < 0) {
+            return false;
+        }
+        State next = new State(index, wordId, current == null ? 1 : current.version + 1, 0L, 0L, 0, 0,
+                current == null ? new String[0] : current.log, "NEW " + player);
+        if (!state.compareAndSet(current, next)) {
+            return false;
+        }
+        publish(next);
+        return true;
+    }
+
+    // 猜一个字母，返回 HangmanEngine 的 HIT、MISS、WON、LOST 或 ALREADY_GUESSED；不在字母表中的字符返回 ALREADY_GUESSED
+    public int guess(char letter, long player) {
+        while (true) {
+            State current = state.get();
+            if (current == null || current.isOver()) {
+                return HangmanEngine.ALREADY_GUESSED;
+            }
+            Alphabet alphabet = current.getAlphabet();
+            int code = alphabet.indexOf(letter);
+            long bit = code < 0 ? 0L : 1L << code;
+            if (bit == 0 || (current.guessedLetters & bit) != 0) {
+                return HangmanEngine.ALREADY_GUESSED;
+            }
+            State next = current.guess(bit, alphabet.letter(code), player);
+            if (state.compareAndSet(current, next)) {
+                guesses.increment();
+                publish(next);
+                return next.revealed > current.revealed ? (next.isWon() ? HangmanEngine.WON : HangmanEngine.HIT)
+                        : (next.isLost() ? HangmanEngine.LOST : HangmanEngine.MISS);
+            }
+            retries.increment(); // 其他玩家先修改了状态，按新状态重新判断
+        }
+    }
+
+    // 版本为 version 的事件；还没有发布，或者已经被更新的事件覆盖（落后超过 HISTORY）时返回 null
+    public Event event(long version) {
+        Event event = history.get((int) version & (HISTORY - 1));
+        return event != null && event.version == version ? event : null;
+    }
+
+    // 最新的快照，还没有观众时为 null
+    public Snapshot snapshot() {
+        return snapshot.get();
+    }
+
+    // 把状态变化编码一次放进 history，再通知所有成员，格式为 "EVENT <房间> <版本> <变化> <状态>"，变化为
+    // "NEW <玩家>" 或 "GUESS <玩家> <字母> <HIT|MISS|WON|LOST>"；有观众时再编码一次快照，通知所有观众
+    private void publish(State state) {
+        StringBuilder line = new StringBuilder(128).append("EVENT ").append(name).append(' ')
+                .append(state.version).append(' ').append(state.getChange()).append(' ');
+        state.appendTo(line);
+        line.append('\n');
+        history.set((int) state.version & (HISTORY - 1),
+                new Event(state.version, line.toString().getBytes(StandardCharsets.UTF_8)));
+        for (Member member : members) {
+            member.changed();
+        }
+        if (!spectators.isEmpty()) {
+            updateSnapshot(state);
+            for (Member spectator : spectators) {
+                spectator.changed();
+            }
+        }
+    }
+
+    // 编码 state 的快照，比现有的快照新时替换；多个线程乱序发布时较旧的版本不会覆盖较新的
+    private void updateSnapshot(State state) {
+        Snapshot current = snapshot.get();
+        if (current != null && current.version >= state.version) {
+            return;
+        }
+        StringBuilder text = new StringBuilder(128 + LOG_SIZE * 32).append("SNAPSHOT ").append(name).append(' ')
+                .append(state.version).append(' ');
+        state.appendTo(text);
+        text.append('\n');
+        long logVersion = state.version - state.log.length + 1;
+        for (String change : state.log) {
+            text.append("LOG ").append(logVersion++).append(' ').append(change).append('\n');
+        }
+        text.append("END\n");
+        Snapshot encoded = new Snapshot(state.version, text.toString().getBytes(StandardCharsets.UTF_8));
+        Metrics.ROOM_SNAPSHOTS.increment();
+        while (current == null || current.version < encoded.version) {
+            if (snapshot.compareAndSet(current, encoded)) {
+                return;
+            }
+            current = snapshot.get();
+        }
+    }
+
+    static String resultName(int result) {
+        switch (result) {
+            case HangmanEngine.HIT:
+                return "HIT";
+            case HangmanEngine.MISS:
+                return "MISS";
+            case HangmanEngine.WON:
+                return "WON";
+            case HangmanEngine.LOST:
+                return "LOST";
+            default:
+                return "REPEAT";
+        }
+    }
+}
@@ -0,0 +1,49 @@
+import java.util.Locale;
+import java.util.Random;
+
+// 模拟程序中的玩家：根据当前的游戏状态选择下一个要猜的字母，并决定是否使用提示
+// 同一个实例会被多个线程同时使用，实现不能保存每局游戏的状态；随机数由调用方提供，保证结果可以按种子重现
+public interface GuessStrategy {
+    // 按字母频率依次猜（见 Alphabet.byFrequency，例如英语为 ETAOIN...）
+    GuessStrategy FREQUENCY = (engine, random) -> {
+        Alphabet alphabet = engine.getAlphabet();
+        long guessed = engine.getGuessedLetters();
+        for (int rank = 0; rank < alphabet.size(); rank++) {
+            int code = alphabet.byFrequency(rank);
+            if ((guessed & (1L << code)) == 0) {
+                return alphabet.letter(code);
+            }
+        }
+        throw new IllegalStateException("所有字母都已经猜过");
+    };
+
+    // 在没猜过的字母中随机选一个
+    GuessStrategy RANDOM = (engine, random) -> {
+        Alphabet alphabet = engine.getAlphabet();
+        long remaining = ~engine.getGuessedLetters() & alphabet.mask();
+        for (int k = random.nextInt(Long.bitCount(remaining)); k > 0; k--) {
+            remaining &= remaining - 1; // 去掉最低的一位
+        }
+        return alphabet.letter(Long.numberOfTrailingZeros(remaining));
+    };
+
+    // 下一个要猜的字母，必须是还没有猜过的字母
+    char nextGuess(HangmanEngine engine, Random random);
+
+    // 还有提示可用时是否使用提示，默认在只剩最后一次机会时使用
+    default boolean useHint(HangmanEngine engine) {
+        return engine.getRemainingGuesses() <= 1;
+    }
+
+    // 按名称查找内置的策略，名称不区分大小写
+    static GuessStrategy forName(String name) {
+        switch (name.toLowerCase(Locale.ROOT)) {
+            case "frequency":
+                return FREQUENCY;
+            case "random":
+                return RANDOM;
+            default:
+                throw new IllegalArgumentException("未知的策略: " + name);
+        }
+    }
+}
@@ -0,0 +1,215 @@
+// 猜单词游戏的规则和状态，不依赖 Swing，可以在服务器或模拟程序中直接使用
+// 状态全部保存在基本类型中：已猜字母的位掩码、已揭示的字母数和错误次数，猜一次字母不会分配任何对象
+// 单词的字母位置掩码由 WordIndex 预先算好，猜字母只需一次掩码查找和一次计数
+// 字母按词典的字母表（Alphabet）换成编码，掩码的第 i 位对应编码为 i 的字母，任何文字都一样
+// 邪恶模式下单词不固定，每次猜字母前由 EvilAdversary 换成最大的一组候选单词中的一个，其余规则不变
+public class HangmanEngine {
+    public static final int MAX_ERRORS = 7; // 最大错误次数
+
+    // guess() 的返回结果
+    public static final int ALREADY_GUESSED = 0; // 这个字母已经猜过，或者本轮已经结束
+    public static final int HIT = 1; // 猜中了一个字母
+    public static final int MISS = 2; // 没有猜中
+    public static final int WON = 3; // 猜中并且整个单词都已揭示
+    public static final int LOST = 4; // 没有猜中并且错误次数已用完
+
+    private WordIndex index; // 当前单词所在的索引
+    private int wordId;
+    private Alphabet alphabet;
+    private long letterSet; // 单词包含的字母集合
+    private int distinct; // 单词中不同字母的个数
+    private Difficulty difficulty;
+    private int maxHints;
+    private long guessedLetters; // 已猜字母的位掩码，第 i 位对应编码为 i 的字母
+    private long revealedPositions; // 已揭示的位置掩码，仅用于显示
+    private int revealed; // 已揭示的不同字母个数，revealed == distinct 即为猜中
+    private int errors;
+    private int hintsUsed;
+    private boolean gaveUp;
+    private EvilAdversary adversary; // 邪恶模式使用，在各局之间复用
+    private boolean evil;
+
+    // 用索引中编号为 wordId 的单词开始新的一轮
+    public void start(WordIndex index, int wordId, Difficulty difficulty) {
+        start(index, wordId, difficulty, GameMode.NORMAL);
+    }
+
+    // 邪恶模式下 wordId 只决定单词长度，候选单词为这个长度的所有单词
+    public void start(WordIndex index, int wordId, Difficulty difficulty, GameMode mode) {
+        this.index = index;
+        this.alphabet = index.getAlphabet();
+        this.difficulty = difficulty;
+        this.maxHints = difficulty.getMaxHints();
+        this.evil = mode == GameMode.EVIL;
+        if (evil) {
+            if (adversary == null) {
+                adversary = new EvilAdversary();
+            }
+            adversary.start(index, index.length(wordId));
+        }
+        setWord(wordId);
+        guessedLetters = 0;
+        revealedPositions = 0L;
+        revealed = 0;
+        errors = 0;
+        hintsUsed = 0;
+        gaveUp = false;
+    }
+
+    // 猜一个字母（大小写均可），返回 HIT、MISS、WON、LOST 或 ALREADY_GUESSED；不在字母表中的字符返回 ALREADY_GUESSED
+    public int guess(char letter) {
+        long bit = letterBit(letter);
+        if (bit == 0 || isOver() || (guessedLetters & bit) != 0) {
+            return ALREADY_GUESSED;
+        }
+        guessedLetters |= bit;
+        if (evil) {
+            setWord(adversary.choose(bit));
+        }
+        if ((letterSet & bit) != 0) {
+            reveal(bit);
+            return isWon() ? WON : HIT;
+        }
+        errors++;
+        return isLost() ? LOST : MISS;
+    }
+
+    // 提示：揭示第一个尚未猜出的字母，返回该字母；没有剩余提示或本轮已结束时返回 0
+    public char hint() {
+        if (!useHint()) {
+            return 0;
+        }
+        int position = Long.numberOfTrailingZeros(~revealedPositions);
+        long bit = 1L << index.letterCode(wordId, position);
+        guessedLetters |= bit;
+        if (evil) {
+            setWord(adversary.keep(bit, index.positions(wordId, bit))); // 其他候选单词必须与揭示的位置一致
+        }
+        reveal(bit);
+        return index.letterAt(wordId, position);
+    }
+
+    // 只消耗一次提示，不揭示字母（例如智能提示只给出建议）；没有剩余提示或本轮已结束时返回 false
+    public boolean useHint() {
+        if (isOver() || hintsUsed >= maxHints) {
+            return false;
+        }
+        hintsUsed++;
+        return true;
+    }
+
+    // 放弃本轮，整个单词都会显示出来；本轮已结束（猜中、失败或已放弃）时什么也不做并返回 false
+    public boolean giveUp() {
+        if (isOver()) {
+            return false;
+        }
+        gaveUp = true;
+        return true;
+    }
+
+    // 换成另一个单词；邪恶模式下新单词对已猜字母的揭示位置与原来的相同，已揭示的字母数不变
+    private void setWord(int wordId) {
+        this.wordId = wordId;
+        this.letterSet = index.letterSet(wordId);
+        this.distinct = index.distinctLetters(wordId);
+    }
+
+    // 揭示一个单词中存在的字母：一次掩码查找加一次计数
+    private void reveal(long bit) {
+        revealedPositions |= index.positions(wordId, bit);
+        revealed++;
+    }
+
+    private long letterBit(char c) {
+        int code = alphabet.indexOf(c);
+        return code < 0 ? 0L : 1L << code;
+    }
+
+    // 把当前猜测状态写入 out，格式为 "_ A _ _ B"，out 的长度应为 length() * 2 - 1
+    public void fillDisplay(char[] out) {
+        int length = length();
+        for (int i = 0; i < length; i++) {
+            out[i * 2] = isRevealed(i) ? index.letterAt(wordId, i) : '_';
+            if (i > 0) {
+                out[i * 2 - 1] = ' ';
+            }
+        }
+    }
+
+    // 已猜中的字母在单词中的位置掩码，字母没有猜过或不在单词中时返回 0
+    public long getRevealedPositions(char letter) {
+        long bit = letterBit(letter);
+        return (guessedLetters & bit) == 0 ? 0L : index.positions(wordId, bit);
+    }
+
+    public boolean isRevealed(int position) {
+        return gaveUp || (revealedPositions & (1L << position)) != 0;
+    }
+
+    public boolean isGuessed(char letter) {
+        return (guessedLetters & letterBit(letter)) != 0;
+    }
+
+    // 已猜字母（包括提示过的字母）的位掩码，第 i 位对应编码为 i 的字母
+    public long getGuessedLetters() {
+        return guessedLetters;
+    }
+
+    public boolean isWon() {
+        return !gaveUp && revealed == distinct;
+    }
+
+    public boolean isLost() {
+        return gaveUp || errors >= MAX_ERRORS;
+    }
+
+    public boolean isOver() {
+        return isWon() || isLost();
+    }
+
+    // 当前单词所在词典的字母表
+    public Alphabet getAlphabet() {
+        return alphabet;
+    }
+
+    public String getWord() {
+        return index.word(wordId);
+    }
+
+    public Difficulty getDifficulty() {
+        return difficulty;
+    }
+
+    public boolean isEvil() {
+        return evil;
+    }
+
+    // 邪恶模式下仍然可能的单词数，普通模式下为 1
+    public int getCandidateCount() {
+        return evil ? adversary.size() : 1;
+    }
+
+    public int getWordId() {
+        return wordId;
+    }
+
+    public int length() {
+        return index.length(wordId);
+    }
+
+    public int getErrors() {
+        return errors;
+    }
+
+    public int getRemainingGuesses() {
+        return MAX_ERRORS - errors;
+    }
+
+    public int getHintsUsed() {
+        return hintsUsed;
+    }
+
+    public int getRemainingHints() {
+        return maxHints - hintsUsed;
+    }
+}
@@ -1,70 +1,198 @@
 import javax.swing.*;
 import java.awt.*;
+import java.awt.event.ActionEvent;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ExecutionException;
 import java.io.*;
 import java.nio.file.*;
 
 public class HangmanGame extends JFrame {
-    private static String[] WORDS;
-    private enum Difficulty {
-        EASY(5, 6),
-        MEDIUM(7, 9),
-        HARD(10, Integer.MAX_VALUE);
-
-        private final int minLength;
-        private final int maxLength;
-
-        Difficulty(int minLength, int maxLength) {
-            this.minLength = minLength;
-            this.maxLength = maxLength;
-        }
-
-        public boolean isWordLengthValid(int length) {
-            return length >= minLength && length <= maxLength;
-        }
-    }
-
-    static {
-        try {
-            WORDS = Files.lines(Paths.get("wordlist.txt"))
-                    .toArray(String[]::new);
-        } catch (IOException e) {
-            e.printStackTrace();
-            WORDS = new String[0];
-        }
-    }
-
-    private static final int MAX_ERRORS = 7;
+    // 消息模板，"{}" 为参数的位置
+    private static final MessageLog.Template HIT_MESSAGE = new MessageLog.Template("恭喜，'{}' 是单词的组成字母。 ");
+    private static final MessageLog.Template MISS_MESSAGE = new MessageLog.Template("遗憾，'{}' 不是单词的组成字母。 ");
+    private static final MessageLog.Template LOST_MESSAGE = new MessageLog.Template("游戏结束! 单词是: {}\n");
+    private static final MessageLog.Template GAVE_UP_MESSAGE = new MessageLog.Template("你放弃了! 单词是: {}");
+    private static final MessageLog.Template HINT_MESSAGE = new MessageLog.Template("提示: '{}' 是单词的一个字母。\n");
+    private static final MessageLog.Template SMART_HINT_MESSAGE = new MessageLog.Template("提示: 建议猜 '{}'，还有 {} 个可能的单词。\n");
+    private static final MessageLog.Template FIRST_INFO_MESSAGE = new MessageLog.Template("单词长度为: {}，还可以猜测的次数为: {}次\n");
+    private static final MessageLog.Template INFO_MESSAGE = new MessageLog.Template("请选下一个字母，剩余尝试次数为: {}次\n");
+
+    // 需要更新的界面部分，同一个 EDT 周期内的多次修改合并为一次更新
+    private static final int UPDATE_WORD = 1; // wordField
+    private static final int UPDATE_FIGURE = 2; // hangmanPanel
+    private static final int UPDATE_BUTTONS = 4; // 字母按钮和提示按钮
+
+    private static final String JOURNAL_FILE = "game-events.journal"; // 与词典文件在同一个目录中
+    private static final String STATS_FILE = "game-players.stats";
+    private static final long SESSION_ID = 0; // 事件日志中的会话编号
+    private static final String DEFAULT_PLAYER = "player"; // 系统用户名不能作为玩家名时使用
+
+    private final Dictionary dictionary = new Dictionary(Paths.get("wordlist.txt")); // 加载完成前只能使用已就绪的长度
+    private DictionaryLoader dictionaryLoader;
+    private Difficulty pendingDifficulty; // 词典尚未就绪时等待开始的难度
+    private GameMode gameMode = GameMode.NORMAL; // 在难度对话框中与难度一起选择
 
     private HangmanPanel hangmanPanel;
     private JTextField wordField;
-    private JTextArea messageArea;
+    private final MessageLog messageLog = new MessageLog(); // 只保留最近的消息
     private JButton nextWordButton;
     private JButton giveUpButton;
+    private JButton hintButton;
+    private JProgressBar loadingBar;
     private JMenuBar menuBar;
     private JMenuItem nextWordMenuItem;
     private JMenuItem giveUpMenuItem;
+    private JCheckBoxMenuItem smartHintMenuItem;
     private JMenuItem exitMenuItem;
-    private List<JButton> letterButtons = new ArrayList<>();
-    private String currentWord;
-    private char[] guessedWord;
-    private int errors;
+    private JPanel lettersPanel;
+    private List<JButton> letterButtons = new ArrayList<>(); // 第 i 个按钮对应编码为 i 的字母
+    private final List<KeyStroke> letterKeys = new ArrayList<>(); // 当前绑定到猜字母的按键
+    private Alphabet alphabet; // 字母按钮和按键对应的字母表
+    private final Random random = new Random();
+    private final WordScheduler scheduler = new WordScheduler(WordScheduler.Mode.SHUFFLE); // 每个单词出现一次之前不会重复
+    private WordScheduler.Tables schedulerTables; // 当前词典的抽取表
+    private final HangmanEngine engine = new HangmanEngine(); // 游戏规则和状态
+    private GameJournal journal; // 事件日志，打不开时为 null，游戏照常进行
+    private PlayerStats stats; // 玩家统计，打不开时为 null
+    private long player; // 玩家统计中的玩家编号，玩家名为系统用户名
+    private long gameStart; // 当前一局开始的时间（System.nanoTime()）
+    private char[] guessedWord; // wordField 的显示内容
+    private CandidateIndex candidateIndex; // 当前一局所用词典的智能提示索引
+    private final CandidateSet candidates = new CandidateSet(); // 当前一局仍然可能的单词
+    private boolean candidatesReady; // 本局的候选集合是否已经初始化
+    private int pendingUpdates; // 尚未应用的 UPDATE_* 标志
+    private final Runnable applyUpdates = this::applyUpdates;
 
     private boolean isFirstUpdate; // 标记是否是第一次调用 updateInfoLabel
 
     public HangmanGame() {
         super();
+        Metrics.start(); // 可以用 jconsole 查看各项操作的耗时
         setTitle("Hangman Game");
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         setSize(800, 600);
         initializeComponents();
+        openJournal();
+        openStats();
         setVisible(true);
+        dictionaryLoader = new DictionaryLoader();
+        dictionaryLoader.execute(); // 窗口先显示出来，词典在后台加载
         selectDifficultyAndStartGame();
     }
 
+    // 在后台加载词典：有编译好的二进制词典时直接映射，否则分阶段解析文本，
+    // 优先填充玩家选择的难度对应的长度，就绪后立即开始游戏；加载完成后开始监视词典文件的变化
+    private class DictionaryLoader extends SwingWorker<WordIndex, WordIndex> {
+        private volatile Difficulty preferred = Difficulty.MEDIUM; // 对话框默认选中中等难度
+
+        void prefer(Difficulty difficulty) {
+            preferred = difficulty;
+        }
+
+        @Override
+        protected WordIndex doInBackground() throws IOException {
+            long start = System.nanoTime();
+            Path path = dictionary.getPath();
+            WordIndex compiled = WordIndex.loadCompiled(path);
+            if (compiled != null) {
+                dictionary.set(compiled);
+                Metrics.DICTIONARY_LOAD.recordSince(start);
+                return compiled;
+            }
+            WordIndex.Builder builder = WordIndex.builder(path);
+            WordIndex index = builder.index();
+            dictionary.set(index);
+            Difficulty next;
+            while ((next = nextDifficulty(index)) != null) {
+                builder.fill(next.getMinLength(), next.getMaxLength());
+                setProgress(builder.progress());
+                publish(index);
+            }
+            WordIndex finished = builder.finish(); // 不属于任何难度的长度最后一起填充
+            Metrics.DICTIONARY_LOAD.recordSince(start);
+            return finished;
+        }
+
+        // 下一个要填充的难度：先填充玩家选择的，再按顺序填充其他的，全部就绪时返回 null
+        private Difficulty nextDifficulty(WordIndex index) {
+            Difficulty difficulty = preferred;
+            if (!index.isReady(difficulty.getMinLength(), difficulty.getMaxLength())) {
+                return difficulty;
+            }
+            for (Difficulty d : Difficulty.values()) {
+                if (!index.isReady(d.getMinLength(), d.getMaxLength())) {
+                    return d;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        protected void process(List<WordIndex> chunks) {
+            onDictionaryProgress(chunks.get(chunks.size() - 1));
+        }
+
+        @Override
+        protected void done() {
+            WordIndex index;
+            try {
+                index = get();
+            } catch (InterruptedException | ExecutionException e) {
+                e.printStackTrace();
+                index = WordIndex.of();
+            }
+            loadingBar.setVisible(false);
+            dictionary.set(index);
+            onDictionaryProgress(index);
+
+            // 之后词典文件的修改会在后台重新加载，新的一轮立即使用新词典
+            try {
+                dictionary.watch();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    // 图形界面只有一个玩家，日志中的会话编号为 0；记录在后台提交，不等待落盘
+    // 同一目录中已经有窗口在记录日志时（见 GameJournal.open），这个窗口不记录
+    private void openJournal() {
+        try {
+            journal = GameJournal.open(dictionary.getPath().resolveSibling(JOURNAL_FILE));
+        } catch (IOException e) {
+            System.err.println("无法打开事件日志，本次游戏不记录: " + e);
+            return;
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                journal.close(); // 写出还没有提交的记录
+            } catch (IOException e) {
+                System.err.println("关闭事件日志失败: " + e);
+            }
+        }));
+    }
+
+    // 战绩在关闭窗口后保留，下次启动时继续累计
+    private void openStats() {
+        try {
+            stats = PlayerStats.open(dictionary.getPath().resolveSibling(STATS_FILE));
+            String name = System.getProperty("user.name");
+            player = stats.player(PlayerStats.isValidName(name) ? name : DEFAULT_PLAYER);
+        } catch (IOException e) {
+            System.err.println("无法打开玩家统计，本次游戏不记录战绩: " + e);
+            return;
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                stats.close();
+            } catch (IOException e) {
+                System.err.println("关闭玩家统计失败: " + e);
+            }
+        }));
+    }
+
     private void initializeComponents() {
         Container cp = getContentPane();
         cp.setLayout(new BorderLayout());
@@ -79,14 +207,79 @@ public class HangmanGame extends JFrame {
         // 添加分隔面板到中间区域
         cp.add(splitPane, BorderLayout.CENTER);
 
-        JPanel lettersPanel = createLettersPanel();
+        lettersPanel = new JPanel();
         cp.add(lettersPanel, BorderLayout.NORTH);
 
         JPanel controlPanel = createControlPanel();
         cp.add(controlPanel, BorderLayout.SOUTH);
 
         setupMenuBar();
+        showAlphabet(Alphabet.LATIN); // 词典的字母表确定之前先显示英文字母
+        requestUpdate(UPDATE_BUTTONS); // 第一轮开始前不能猜字母
     }
+
+    // 按字母表生成字母按钮（两行）和按键绑定；换成另一种文字的词典后，新的一轮开始时重新生成
+    private void showAlphabet(Alphabet alphabet) {
+        if (this.alphabet != null && this.alphabet.toString().equals(alphabet.toString())) {
+            return;
+        }
+        this.alphabet = alphabet;
+        lettersPanel.removeAll();
+        letterButtons.clear();
+        lettersPanel.setLayout(new GridLayout(2, (alphabet.size() + 1) / 2));
+        for (int code = 0; code < alphabet.size(); code++) {
+            char c = alphabet.letter(code);
+            JButton button = new JButton(String.valueOf(c));
+            button.addActionListener(e -> checkLetter(c));
+            letterButtons.add(button);
+            lettersPanel.add(button);
+        }
+        lettersPanel.revalidate();
+        lettersPanel.repaint();
+        setupKeyBindings(alphabet);
+        requestUpdate(UPDATE_BUTTONS);
+    }
+
+    // 直接用键盘输入字母猜测；每次按键只修改游戏状态，界面在本批按键处理完后统一更新，快速输入不会堆积事件
+    // 绑定的是输入的字符而不是键码，任何键盘布局下输入字母表中的字母（大小写均可）都可以猜测
+    private void setupKeyBindings(Alphabet alphabet) {
+        JRootPane rootPane = getRootPane();
+        InputMap inputMap = rootPane.getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW);
+        ActionMap actionMap = rootPane.getActionMap();
+        for (KeyStroke key : letterKeys) {
+            inputMap.remove(key);
+        }
+        letterKeys.clear();
+        for (int code = 0; code < alphabet.size(); code++) {
+            char letter = alphabet.letter(code);
+            String name = "guess" + letter;
+            for (char c : new char[] { letter, Character.toLowerCase(letter) }) {
+                KeyStroke key = KeyStroke.getKeyStroke(c);
+                inputMap.put(key, name);
+                letterKeys.add(key);
+            }
+            actionMap.put(name, new AbstractAction() {
+                @Override
+                public void actionPerformed(ActionEvent e) {
+                    checkLetter(letter);
+                }
+            });
+        }
+    }
+
+    // 词典有新的桶就绪或者加载完成时调用（在 EDT 上）
+    private void onDictionaryProgress(WordIndex index) {
+        loadingBar.setValue(dictionaryLoader.getProgress());
+        if (guessedWord == null) {
+            showAlphabet(index.getAlphabet()); // 第一轮开始前就显示词典的字母
+        }
+        if (pendingDifficulty != null && pendingDifficulty.isReady(index)) {
+            Difficulty difficulty = pendingDifficulty;
+            pendingDifficulty = null;
+            newGame(difficulty);
+        }
+    }
+
     private void selectDifficultyAndStartGame() {
         Difficulty selectedDifficulty = askForDifficulty();
 
@@ -99,14 +292,16 @@ public class HangmanGame extends JFrame {
     }
     private Difficulty askForDifficulty() {
         Object[] options = { "简单", "中等", "困难" };
+        JCheckBox evilModeCheckBox = new JCheckBox("邪恶模式（单词会随着你的猜测改变）", gameMode == GameMode.EVIL);
         int choice = JOptionPane.showOptionDialog(this,
-                "请选择游戏难度:",
+                new Object[] { "请选择游戏难度:", evilModeCheckBox },
                 "选择难度",
                 JOptionPane.YES_NO_CANCEL_OPTION,
                 JOptionPane.QUESTION_MESSAGE,
                 null,
                 options,
                 options[1]);
+        gameMode = evilModeCheckBox.isSelected() ? GameMode.EVIL : GameMode.NORMAL;
 
         switch (choice) {
             case 0:
@@ -125,12 +320,14 @@ public class HangmanGame extends JFrame {
         wordPanel.setLayout(new BorderLayout());
         Color bgColor = Color.WHITE; // 统一的背景颜色
 
-        // 设置 messageArea
-        messageArea = new JTextArea();
-        messageArea.setFont(new Font("Monospaced", Font.PLAIN, 16));
-        messageArea.setEditable(false);
-        messageArea.setBackground(bgColor); // 设置背景颜色
-        wordPanel.add(messageArea, BorderLayout.CENTER);
+        // 设置消息区域，只绘制可见的行
+        MessageLogView messageView = new MessageLogView(messageLog);
+        messageView.setFont(new Font("Monospaced", Font.PLAIN, 16));
+        messageView.setBackground(bgColor); // 设置背景颜色
+        messageView.setForeground(Color.BLACK);
+        JScrollPane messageScrollPane = new JScrollPane(messageView);
+        messageScrollPane.setBorder(null);
+        wordPanel.add(messageScrollPane, BorderLayout.CENTER);
 
         // 设置 wordField
         wordField = new JTextField();
@@ -142,18 +339,6 @@ public class HangmanGame extends JFrame {
         return wordPanel;
     }
 
-    private JPanel createLettersPanel() {
-        JPanel lettersPanel = new JPanel();
-        lettersPanel.setLayout(new GridLayout(2, 13)); // Adjusted grid layout for 26 letters in 2 rows
-        for (char c = 'A'; c <= 'Z'; c++) {
-            JButton button = new JButton(String.valueOf(c));
-            button.addActionListener(e -> checkLetter(button));
-            letterButtons.add(button);
-            lettersPanel.add(button);
-        }
-        return lettersPanel;
-    }
-
     private JPanel createControlPanel() {
         JPanel controlPanel = new JPanel();
         controlPanel.setLayout(new FlowLayout(FlowLayout.CENTER));
@@ -166,6 +351,16 @@ public class HangmanGame extends JFrame {
         giveUpButton.addActionListener(e -> giveUp());
         controlPanel.add(giveUpButton);
 
+        hintButton = new JButton("提示");
+        hintButton.addActionListener(e -> giveHint());
+        controlPanel.add(hintButton);
+
+        // 词典加载进度，加载完成后隐藏
+        loadingBar = new JProgressBar(0, 100);
+        loadingBar.setStringPainted(true);
+        loadingBar.setString("正在加载词典...");
+        controlPanel.add(loadingBar);
+
         getContentPane().add(controlPanel, BorderLayout.SOUTH);
         return controlPanel;
     }
@@ -182,6 +377,14 @@ public class HangmanGame extends JFrame {
         giveUpMenuItem.addActionListener(e -> giveUp());
         fileMenu.add(giveUpMenuItem);
 
+        // 智能提示不直接揭示字母，而是根据仍然可能的单词建议下一个要猜的字母
+        smartHintMenuItem = new JCheckBoxMenuItem("智能提示");
+        fileMenu.add(smartHintMenuItem);
+
+        JMenuItem statsMenuItem = new JMenuItem("我的战绩");
+        statsMenuItem.addActionListener(e -> showStats());
+        fileMenu.add(statsMenuItem);
+
         exitMenuItem = new JMenuItem("退出游戏");
         exitMenuItem.addActionListener(e -> System.exit(0));
         fileMenu.add(exitMenuItem);
@@ -191,113 +394,230 @@ public class HangmanGame extends JFrame {
     }
 
     private void newGame(Difficulty difficulty) {
-        Random random = new Random();
-
-        // Filter words based on selected difficulty
-        List<String> filteredWords = new ArrayList<>();
-        for (String word : WORDS) {
-            int length = word.length();
-            if (difficulty.isWordLengthValid(length)) {
-                filteredWords.add(word);
+        WordIndex wordIndex = dictionary.current();
+        if (wordIndex == null || !difficulty.isReady(wordIndex)) {
+            // 词典中这个难度的单词还没有加载好，就绪后自动开始
+            pendingDifficulty = difficulty;
+            dictionaryLoader.prefer(difficulty);
+            messageLog.clear();
+            messageLog.append("正在加载词典，请稍候...\n");
+            return;
+        }
+
+        // 从预先算好的难度排名中不重复地选词；词典加载完成前直接从长度索引中随机选
+        long start = System.nanoTime();
+        int wordId;
+        if (wordIndex.isRanked()) {
+            if (schedulerTables == null || schedulerTables.getIndex() != wordIndex) {
+                schedulerTables = WordScheduler.Tables.byHardness(wordIndex);
             }
+            wordId = scheduler.next(schedulerTables, difficulty);
+        } else {
+            wordId = difficulty.pickWord(wordIndex, random);
         }
 
-        if (filteredWords.isEmpty()) {
+        if (wordId < 0) {
             JOptionPane.showMessageDialog(this, "没有符合选择难度的单词。");
             return;
         }
 
-        currentWord = filteredWords.get(random.nextInt(filteredWords.size()));
-        guessedWord = new char[currentWord.length() * 2 - 1];
-        Arrays.fill(guessedWord, '_');
-        for (int i = 1; i < guessedWord.length; i += 2) {
-            guessedWord[i] = ' ';
+        engine.start(wordIndex, wordId, difficulty, gameMode);
+        Metrics.NEW_GAME.recordSince(start); // 选词和开局
+        showAlphabet(wordIndex.getAlphabet());
+        if (journal != null) {
+            journal.newGame(SESSION_ID, wordIndex, wordId, difficulty, gameMode);
+        }
+        gameStart = System.nanoTime();
+        if (stats != null) {
+            stats.gameStarted(player, difficulty);
+        }
+        guessedWord = new char[engine.length() * 2 - 1];
+        if (candidateIndex == null || candidateIndex.getWordIndex() != wordIndex) {
+            candidateIndex = new CandidateIndex(wordIndex); // 词典重新加载过，位图按需重新构建
         }
-        errors = 0;
-        wordField.setText(new String(guessedWord));
-        messageArea.setText("");
+        candidatesReady = false;
+        if (smartHintMenuItem.isSelected()) {
+            updateCandidates();
+        }
+        messageLog.clear();
         isFirstUpdate = true;
         updateInfoLabel();
-        hangmanPanel.reset();
-        hangmanPanel.repaint();
-        enableLetterButtons();
+        requestUpdate(UPDATE_WORD | UPDATE_FIGURE | UPDATE_BUTTONS); // 面板只重绘变化的区域
     }
 
-    private void enableLetterButtons() {
-        for (JButton button : letterButtons) {
-            button.setEnabled(true);
+    private void checkLetter(char letter) {
+        if (guessedWord == null) {
+            return; // 还没有开始过游戏
         }
-    }
-
-
-    private void checkLetter(JButton button) {
-        char letter = button.getText().charAt(0);
-        button.setEnabled(false);
-        boolean correct = false;
-
-        // 遍历 currentWord，检查 letter 是否匹配
-        for (int i = 0; i < currentWord.length(); i++) {
-            if (currentWord.charAt(i) == letter) {
-                guessedWord[i * 2] = letter; // 在正确的下划线位置显示猜中的字母
-                correct = true;
-            }
+        long start = System.nanoTime();
+        int result = engine.guess(letter);
+        if (result == HangmanEngine.ALREADY_GUESSED) {
+            return; // 已经猜过或者本轮已经结束，例如按住按键时的重复输入
+        }
+        if (journal != null) {
+            journal.guess(SESSION_ID, letter, result);
+        }
+        if (result == HangmanEngine.WON || result == HangmanEngine.LOST) {
+            recordResult();
+        }
+        requestUpdate(UPDATE_WORD | UPDATE_BUTTONS); // 更新 wordField 以显示当前猜测状态
+        if (smartHintMenuItem.isSelected()) {
+            updateCandidates(); // 每次猜测后增量缩小候选集合，提示时不需要再计算
         }
 
-        // 更新 wordField 以显示当前猜测状态
-        wordField.setText(new String(guessedWord)); // 使用 new String 确保正确显示
-
-        if (correct) {
-            messageArea.append(String.format("恭喜，'%c' 是单词的组成字母。 ", letter));
+        if (result == HangmanEngine.HIT || result == HangmanEngine.WON) {
+            messageLog.append(HIT_MESSAGE, letter);
         } else {
-            messageArea.append(String.format("遗憾，'%c' 不是单词的组成字母。 ", letter));
-            errors++;
-            hangmanPanel.setErrors(errors);
-            hangmanPanel.repaint();
-
-            if (errors >= MAX_ERRORS) {
-                messageArea.append(String.format("游戏结束! 单词是: %s\n", currentWord));
-                disableLetterButtons();
+            messageLog.append(MISS_MESSAGE, letter);
+            requestUpdate(UPDATE_FIGURE);
+
+            if (result == HangmanEngine.LOST) {
+                messageLog.append(LOST_MESSAGE, engine.getWord());
             }
         }
 
         // 检查是否赢得游戏
-        if (new String(guessedWord).replace(" ", "").equals(currentWord)) {
-            messageArea.append("恭喜! 你猜中了单词.\n");
-            disableLetterButtons();
+        if (result == HangmanEngine.WON) {
+            messageLog.append("恭喜! 你猜中了单词.\n");
         }
 
         // 更新当前状态信息
         updateInfoLabel();
+        Metrics.CHECK_LETTER.recordSince(start);
     }
 
+    private void giveHint() {
+        long start = System.nanoTime();
+        if (smartHintMenuItem.isSelected() && giveSmartHint()) {
+            Metrics.GIVE_HINT.recordSince(start);
+            return;
+        }
+        char letter = engine.hint();
+        if (letter == 0) {
+            messageLog.append("已经用完所有提示。\n");
+            requestUpdate(UPDATE_BUTTONS);
+            return;
+        }
+        if (journal != null) {
+            journal.hint(SESSION_ID, letter);
+        }
 
+        messageLog.append(HINT_MESSAGE, letter);
+        requestUpdate(UPDATE_WORD | UPDATE_BUTTONS); // 提示过的字母不能再猜，用完提示后禁用提示按钮
+        if (engine.isWon()) {
+            recordResult();
+            messageLog.append("恭喜! 你猜中了单词.\n");
+        }
+        Metrics.GIVE_HINT.recordSince(start);
+    }
 
+    // 智能提示：建议最能区分剩余单词的字母，返回 false 表示没有可建议的字母，改用普通提示
+    private boolean giveSmartHint() {
+        updateCandidates();
+        char letter = candidates.suggest(engine.getGuessedLetters());
+        if (letter == 0 || !engine.useHint()) {
+            return false;
+        }
+        if (journal != null) {
+            journal.hint(SESSION_ID, (char) 0); // 只消耗了一次提示
+        }
+        messageLog.append(SMART_HINT_MESSAGE, letter, candidates.size());
+        requestUpdate(UPDATE_BUTTONS); // 用完提示后禁用提示按钮
+        return true;
+    }
+
+    // 本局第一次用到时初始化候选集合（中途打开智能提示也可以），之后只处理新猜的字母
+    private void updateCandidates() {
+        if (!candidatesReady) {
+            candidates.start(candidateIndex, engine.length());
+            candidatesReady = true;
+        }
+        candidates.update(engine);
+    }
 
     private void giveUp() {
-        for (int i = 0; i < currentWord.length(); i++) {
-            guessedWord[i * 2] = currentWord.charAt(i); // 显示完整单词
+        if (guessedWord == null) {
+            return; // 还没有开始过游戏
+        }
+        if (!engine.giveUp()) {
+            return; // 本轮已经结束，不再记录日志和战绩
+        }
+        if (journal != null) {
+            journal.giveUp(SESSION_ID);
+        }
+        recordResult();
+        messageLog.clear();
+        messageLog.append(GAVE_UP_MESSAGE, engine.getWord());
+        requestUpdate(UPDATE_WORD | UPDATE_BUTTONS); // 显示完整单词
+    }
+
+    // 一局刚刚结束（猜中、失败或放弃）时更新战绩
+    private void recordResult() {
+        (engine.isWon() ? Metrics.GAMES_WON : Metrics.GAMES_LOST).increment();
+        if (stats != null) {
+            stats.gameFinished(player, engine.getDifficulty(), engine.isWon(), engine.getErrors(),
+                    engine.getHintsUsed(), (System.nanoTime() - gameStart) / 1_000_000);
         }
-        wordField.setText(new String(guessedWord)); // 使用 new String
-        messageArea.setText("你放弃了! 单词是: " + currentWord);
-        disableLetterButtons();
     }
 
+    private void showStats() {
+        if (stats == null) {
+            JOptionPane.showMessageDialog(this, "没有可用的战绩记录。");
+            return;
+        }
+        StringBuilder text = new StringBuilder();
+        for (Difficulty difficulty : Difficulty.values()) {
+            int games = stats.getGames(player, difficulty);
+            int wins = stats.getWins(player, difficulty);
+            text.append(difficulty).append(": 共 ").append(games).append(" 局，猜中 ").append(wins).append(" 局");
+            if (wins > 0) {
+                text.append("，平均用时 ").append(stats.getAverageSolveMillis(player, difficulty) / 1000.0)
+                        .append(" 秒，最快 ").append(stats.getBestSolveMillis(player, difficulty) / 1000.0).append(" 秒");
+            }
+            text.append("，错误 ").append(stats.getErrors(player, difficulty))
+                    .append(" 次，提示 ").append(stats.getHints(player, difficulty))
+                    .append(" 次，当前连胜 ").append(stats.getStreak(player, difficulty))
+                    .append("，最长连胜 ").append(stats.getBestStreak(player, difficulty)).append('\n');
+        }
+        text.append("总分: ").append(stats.getScore(player));
+        JOptionPane.showMessageDialog(this, text.toString(), "我的战绩", JOptionPane.INFORMATION_MESSAGE);
+    }
 
+    // 标记需要更新的界面部分，本周期内第一次标记时安排一次更新
+    private void requestUpdate(int updates) {
+        if (pendingUpdates == 0) {
+            SwingUtilities.invokeLater(applyUpdates);
+        }
+        pendingUpdates |= updates;
+    }
 
-    private void disableLetterButtons() {
-        for (JButton button : letterButtons) {
-            button.setEnabled(false);
+    // 按游戏的最终状态一次性更新界面，中间状态不会显示出来
+    private void applyUpdates() {
+        int updates = pendingUpdates;
+        pendingUpdates = 0;
+        boolean playing = guessedWord != null && !engine.isOver();
+        if ((updates & UPDATE_WORD) != 0 && guessedWord != null) {
+            engine.fillDisplay(guessedWord);
+            wordField.setText(new String(guessedWord)); // 使用 new String 确保正确显示
+        }
+        if ((updates & UPDATE_FIGURE) != 0) {
+            hangmanPanel.setErrors(guessedWord == null ? 0 : engine.getErrors());
+        }
+        if ((updates & UPDATE_BUTTONS) != 0) {
+            // 状态没有变化的按钮 setEnabled 不会重绘
+            for (int i = 0; i < letterButtons.size(); i++) {
+                letterButtons.get(i).setEnabled(playing && !engine.isGuessed(alphabet.letter(i)));
+            }
+            hintButton.setEnabled(playing && engine.getRemainingHints() > 0);
         }
     }
 
     private void updateInfoLabel() {
         if (isFirstUpdate) {
-            messageArea.append(String.format("单词长度为: %d，还可以猜测的次数为: %d次\n",
-                    currentWord.length(), MAX_ERRORS - errors));
+            messageLog.append(FIRST_INFO_MESSAGE, engine.length(), engine.getRemainingGuesses());
             isFirstUpdate = false; // 之后的调用将不会输出首次信息
         } else {
-            messageArea.append(String.format("请选下一个字母，剩余尝试次数为: %d次\n",
-                    MAX_ERRORS - errors));
+            messageLog.append(INFO_MESSAGE, engine.getRemainingGuesses());
         }
     }
 
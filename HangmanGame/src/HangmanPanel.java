@@ -1,85 +1,192 @@
 import javax.swing.*;
 import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Arc2D;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Line2D;
+import java.awt.geom.Path2D;
+import java.awt.image.BufferedImage;
 
+// 绘制绞刑台和小人的面板
+// 绞刑台和小人的各个部分在类加载时就作为图形定义好，坐标使用单位坐标系：原点在面板中心，
+// 设计尺寸 300x400 的高度对应 1 个单位；面板尺寸变化时只计算一个缩放变换，图形随面板等比缩放
+// 绞刑台（连同背景）缓存在一张图片中，只在面板尺寸或屏幕缩放比例变化时重建；
+// 另一张图片在绞刑台的基础上逐个画上小人的部分，每次只增量画新增的部分，错误次数变化时也只重绘该部分所在的矩形区域
 public class HangmanPanel extends JPanel {
+    private static final double DESIGN_WIDTH = 300; // 设计尺寸，也是面板的首选大小
+    private static final double DESIGN_HEIGHT = 400;
+    private static final BasicStroke GALLOWS_STROKE = new BasicStroke((float) (5 / DESIGN_HEIGHT)); // 绞刑台使用粗细较大的线条
+    private static final BasicStroke FIGURE_STROKE = new BasicStroke((float) (2 / DESIGN_HEIGHT)); // 小人使用粗细较小的线条
+    private static final Shape GALLOWS;
+    private static final Shape[] PARTS; // 小人的各个部分，按错误次数依次出现
+    private static final int STAGES; // 小人的部分数，与最大错误次数相同
+
+    static {
+        // 按设计尺寸下相对于面板中心的像素位置描述，再统一换算到单位坐标系
+        AffineTransform toUnit = AffineTransform.getScaleInstance(1 / DESIGN_HEIGHT, 1 / DESIGN_HEIGHT);
+
+        // 绞刑台尺寸和位置参数
+        int baseY = 150;
+        int poleX = -50;
+        int beamY = -150;
+        int ropeX = 50;
+
+        Path2D.Double gallows = new Path2D.Double();
+        gallows.append(new Line2D.Double(poleX - 100, baseY, poleX + 100, baseY), false); // 底部横线
+        gallows.append(new Line2D.Double(poleX, baseY, poleX, beamY), false); // 垂直支柱
+        gallows.append(new Line2D.Double(poleX, beamY, ropeX, beamY), false); // 顶部横梁
+        gallows.append(new Line2D.Double(ropeX, beamY, ropeX, beamY + 50), false); // 挂钩
+        GALLOWS = toUnit.createTransformedShape(gallows);
+
+        // 小人各部分（相对于绞刑台挂钩的位置）
+        Path2D.Double face = new Path2D.Double(); // 眼睛和嘴
+        face.append(new Line2D.Double(ropeX - 10, beamY + 60, ropeX - 5, beamY + 65), false); // 左眼
+        face.append(new Line2D.Double(ropeX - 5, beamY + 60, ropeX - 10, beamY + 65), false);
+        face.append(new Line2D.Double(ropeX + 5, beamY + 60, ropeX + 10, beamY + 65), false); // 右眼
+        face.append(new Line2D.Double(ropeX + 10, beamY + 60, ropeX + 5, beamY + 65), false);
+        face.append(new Arc2D.Double(ropeX - 5, beamY + 80, 10, 5, 0, 180, Arc2D.OPEN), false); // 半圆形嘴巴
+        Shape[] parts = {
+                new Ellipse2D.Double(ropeX - 20, beamY + 50, 40, 40), // 头部
+                new Line2D.Double(ropeX, beamY + 90, ropeX, beamY + 170), // 身体
+                new Line2D.Double(ropeX, beamY + 110, ropeX - 30, beamY + 130), // 左臂
+                new Line2D.Double(ropeX, beamY + 110, ropeX + 30, beamY + 130), // 右臂
+                new Line2D.Double(ropeX, beamY + 170, ropeX - 30, beamY + 210), // 左腿
+                new Line2D.Double(ropeX, beamY + 170, ropeX + 30, beamY + 210), // 右腿
+                face,
+        };
+        STAGES = parts.length;
+        PARTS = new Shape[STAGES];
+        for (int i = 0; i < STAGES; i++) {
+            PARTS[i] = toUnit.createTransformedShape(parts[i]);
+        }
+    }
+
     private int errors;
 
+    // 当前尺寸下的变换和缓存图片
+    private int cachedWidth = -1;
+    private int cachedHeight = -1;
+    private double cachedScaleX;
+    private double cachedScaleY;
+    private AffineTransform fit; // 单位坐标系到面板坐标的变换
+    private final Rectangle[] partBounds = new Rectangle[STAGES]; // 各部分在面板上占据的区域
+    private BufferedImage gallowsLayer; // 背景和绞刑台
+    private BufferedImage figureLayer; // 绞刑台加上已经画好的小人部分，绘制时直接复制到屏幕
+    private int figureStages; // figureLayer 上已经画了几个部分
+
     public HangmanPanel() {
         setPreferredSize(new Dimension(300, 400)); // 为该组件向其父容器建议一个首选大小
         setBackground(Color.WHITE); // 设置背景颜色为白色
     }
 
+    // 设置错误次数，只重绘变化的部分
     public void setErrors(int errors) {
+        int previous = this.errors;
         this.errors = errors;
-    } // 设置错误次数
+        repaintStages(Math.min(previous, errors), Math.max(previous, errors));
+    }
 
     public void reset() {
-        errors = 0;
+        setErrors(0);
     } // 重置错误次数为0 开始下一轮游戏
 
+    // 重绘第 from 到 to - 1 个部分所在的区域
+    private void repaintStages(int from, int to) {
+        from = Math.max(from, 0);
+        to = Math.min(to, STAGES);
+        if (from >= to) {
+            return;
+        }
+        if (fit == null || cachedWidth != getWidth() || cachedHeight != getHeight()) {
+            repaint(); // 还没有按当前尺寸计算过图形
+            return;
+        }
+        Rectangle dirty = new Rectangle(partBounds[from]);
+        for (int i = from + 1; i < to; i++) {
+            dirty.add(partBounds[i]);
+        }
+        repaint(dirty);
+    }
+
     @Override
     protected void paintComponent(Graphics g) {
-        super.paintComponent(g); // 确保在自定义绘制前，面板被适当地清除
-
-        // 设置抗锯齿
+        // 缓存图片已经包含背景并覆盖整个面板，不需要先清除面板
+        long start = System.nanoTime();
         Graphics2D g2d = (Graphics2D) g;
-        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-
-        // 获取面板的宽度和高度
         int width = getWidth();
         int height = getHeight();
+        AffineTransform transform = g2d.getTransform();
+        validateLayers(width, height, transform.getScaleX(), transform.getScaleY());
 
-        // 计算中心位置
-        int centerX = width / 2;
-        int centerY = height / 2;
-
-        // 绞刑台尺寸和位置参数
-        int baseY = centerY + 150;
-        int poleX = centerX - 50;
-        int beamY = centerY - 150;
-        int ropeX = centerX + 50;
-
-        // 设置颜色
-        g2d.setColor(Color.RED); // 支架设置为红色
-        g2d.setStroke(new BasicStroke(5)); // 设置粗细较大的线条
-
-        // 绘制绞刑台
-        g2d.drawLine(poleX - 100, baseY, poleX + 100, baseY); // 底部横线
-        g2d.drawLine(poleX, baseY, poleX, beamY); // 垂直支柱
-        g2d.drawLine(poleX, beamY, ropeX, beamY);  // 顶部横梁
-        g2d.drawLine(ropeX, beamY, ropeX, beamY + 50); // 挂钩
-
-        // 设置颜色为蓝色，绘制小人
-        g2d.setColor(Color.BLUE);
-        g2d.setStroke(new BasicStroke(2)); // 设置粗细较小的线条
-        // 绘制小人部分（相对于绞刑台挂钩的位置）
-        if (errors > 0) { // 头部
-            g2d.drawOval(ropeX - 20, beamY + 50, 40, 40);
-        }
-        if (errors > 1) { // 身体
-            g2d.drawLine(ropeX, beamY + 90, ropeX, beamY + 170);
+        // 增量更新小人图层：错误次数减少（新的一轮）时先恢复成只有绞刑台
+        if (figureStages > errors) {
+            copy(gallowsLayer, figureLayer);
+            figureStages = 0;
         }
-        if (errors > 2) { // 左臂
-            g2d.drawLine(ropeX, beamY + 110, ropeX - 30, beamY + 130);
+        if (figureStages < errors) {
+            Graphics2D layer = createLayerGraphics(figureLayer);
+            layer.setColor(Color.BLUE);
+            layer.transform(fit);
+            layer.setStroke(FIGURE_STROKE);
+            while (figureStages < Math.min(errors, STAGES)) {
+                layer.draw(PARTS[figureStages++]);
+            }
+            layer.dispose();
         }
-        if (errors > 3) { // 右臂
-            g2d.drawLine(ropeX, beamY + 110, ropeX + 30, beamY + 130);
-        }
-        if (errors > 4) { // 左腿
-            g2d.drawLine(ropeX, beamY + 170, ropeX - 30, beamY + 210);
-        }
-        if (errors > 5) { // 右腿
-            g2d.drawLine(ropeX, beamY + 170, ropeX + 30, beamY + 210);
+
+        // 图片按设备像素绘制，这里缩放回面板坐标
+        g2d.drawImage(figureLayer, 0, 0, width, height, null);
+        Metrics.PANEL_PAINT.recordSince(start);
+    }
+
+    // 尺寸或缩放比例变化时重新计算图形并重建缓存图片
+    private void validateLayers(int width, int height, double scaleX, double scaleY) {
+        if (gallowsLayer != null && width == cachedWidth && height == cachedHeight
+                && scaleX == cachedScaleX && scaleY == cachedScaleY) {
+            return;
         }
-        if (errors > 6) { // 眼睛和嘴
-            // 左眼
-            g2d.drawLine(ropeX - 10, beamY + 60, ropeX - 5, beamY + 65);
-            g2d.drawLine(ropeX - 5, beamY + 60, ropeX - 10, beamY + 65);
-            // 右眼
-            g2d.drawLine(ropeX + 5, beamY + 60, ropeX + 10, beamY + 65);
-            g2d.drawLine(ropeX + 10, beamY + 60, ropeX + 5, beamY + 65);
-            // 嘴巴
-            g2d.drawArc(ropeX - 5, beamY + 80, 10, 5, 0, 180); // 半圆形嘴巴
+        cachedWidth = width;
+        cachedHeight = height;
+        cachedScaleX = scaleX;
+        cachedScaleY = scaleY;
+
+        // 等比缩放到面板中能放下的最大尺寸，并放在面板中心
+        double scale = Math.min(width / DESIGN_WIDTH, height / DESIGN_HEIGHT) * DESIGN_HEIGHT;
+        fit = new AffineTransform();
+        fit.translate(width / 2.0, height / 2.0);
+        fit.scale(scale, scale);
+        for (int i = 0; i < STAGES; i++) {
+            partBounds[i] = fit.createTransformedShape(FIGURE_STROKE.createStrokedShape(PARTS[i])).getBounds();
+            partBounds[i].grow(2, 2); // 抗锯齿会多画出一点
         }
+
+        int imageWidth = Math.max(1, (int) Math.ceil(width * scaleX));
+        int imageHeight = Math.max(1, (int) Math.ceil(height * scaleY));
+        gallowsLayer = new BufferedImage(imageWidth, imageHeight, BufferedImage.TYPE_INT_RGB);
+        figureLayer = new BufferedImage(imageWidth, imageHeight, BufferedImage.TYPE_INT_RGB);
+
+        Graphics2D layer = createLayerGraphics(gallowsLayer);
+        layer.setColor(getBackground());
+        layer.fillRect(0, 0, width, height);
+        layer.setColor(Color.RED); // 支架设置为红色
+        layer.transform(fit);
+        layer.setStroke(GALLOWS_STROKE);
+        layer.draw(GALLOWS);
+        layer.dispose();
+        copy(gallowsLayer, figureLayer);
+        figureStages = 0;
+    }
+
+    private Graphics2D createLayerGraphics(BufferedImage image) {
+        Graphics2D layer = image.createGraphics();
+        layer.scale(cachedScaleX, cachedScaleY);
+        layer.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON); // 设置抗锯齿
+        return layer;
+    }
+
+    private static void copy(BufferedImage from, BufferedImage to) {
+        Graphics2D g = to.createGraphics();
+        g.drawImage(from, 0, 0, null);
+        g.dispose();
     }
 }
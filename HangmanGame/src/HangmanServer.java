@@ -0,0 +1,811 @@
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+// 无界面的多会话服务器：每个 TCP 连接是一个玩家，使用与 HangmanGame 相同的规则（HangmanEngine）
+// 协议按行收发（UTF-8），每条命令对应一行回复：
+//   NEW [EASY|MEDIUM|HARD] [EVIL]  开始新的一轮，默认中等难度；EVIL 为邪恶模式（单词随猜测改变）
+//   GUESS <字母>            猜一个字母（词典字母表中的字母，大小写均可），回复 HIT、MISS、WON、LOST 或 REPEAT
+//   HINT                    提示一个字母，回复 HINT <字母>
+//   GIVEUP                  放弃本轮，本轮已经结束时只回复当前状态
+//   STATUS                  查询当前状态
+//   SESSION                 查询当前会话编号
+//   RESUME <会话编号>        接着玩之前连接上的会话（会话空闲超时后会被清理）
+//   STATS                   查询会话表的统计信息
+//   NAME <玩家名>            以这个名字记录之后开始的各局的战绩，同一个名字的战绩跨会话累计；没有名字的局不计入统计
+//   PROFILE                 查询 NAME 设置的玩家的战绩，回复分数和每个难度的局数、胜局等
+//   TOP [名次数]             查询排行榜的前几名（默认 10），回复 "OK <玩家名>=<分数> ..."
+//   QUIT                    断开连接，会话保留到空闲超时
+// 开局、猜字母、提示和放弃都记录到事件日志中（见 GameJournal），记录落盘之后才回复；服务器启动时从日志恢复会话
+// 状态的格式为 "<单词模式> <错误次数>/<最大错误次数> <已用提示>/<提示上限> <PLAYING|WON|LOST> [单词]"，
+// 例如 "_PP_E 1/7 0/2 PLAYING"；出错时回复 ERR <原因>
+// 多人房间（见 GameRoom）：房间内的玩家一起猜同一个单词，房间的游戏不写日志也不计入战绩
+//   JOIN <房间> [EASY|MEDIUM|HARD]  加入房间，房间不存在时按指定难度创建，回复 "OK <房间> <成员数> <房间状态>"
+//   RGUESS <字母>           在房间中猜一个字母，回复 HIT、MISS、WON、LOST 或 REPEAT 和房间状态
+//   RNEXT                   上一轮结束后开始新的一轮，回复 OK 和房间状态
+//   WATCH <房间>            以观众身份观看已有的房间，回复 "OK <房间> <玩家数> <观众数>"，观众不能猜字母
+//   ROOM                    查询房间，回复 "OK <房间> <玩家数> <观众数> <房间状态>"
+//   LEAVE                   离开房间（或停止观看），断开连接时自动离开
+// 加入房间后，房间的每次变化（包括自己的猜测）都以 "EVENT <房间> <版本> ..." 的形式推送，可能出现在两条回复之间；
+// 观众收到的是多行的快照 "SNAPSHOT <房间> <版本> <房间状态>"、最近几条 "LOG <版本> <变化>" 和 "END"，
+// 跟不上时只收到最新的快照（见 GameRoom.Snapshot）
+// 事件中的玩家为连接编号，房间状态的格式为 "<单词模式> <错误次数>/<最大错误次数> <PLAYING|WON|LOST> [单词]"
+public class HangmanServer {
+    public static final int DEFAULT_PORT = 7777;
+    public static final long DEFAULT_SESSION_TTL_MINUTES = 30; // 会话空闲超时
+    public static final long DEFAULT_SESSION_MEMORY = 256L << 20; // 会话表的内存上限
+
+    private final Dictionary dictionary;
+    private final SessionStore sessions;
+    private final int port;
+    private final GameJournal journal;
+    private final PlayerStats stats;
+    private volatile WordScheduler.Tables tables; // 当前词典的抽取表，所有会话共享
+    private final ConcurrentHashMap<String, GameRoom> rooms = new ConcurrentHashMap<>();
+    private final AtomicLong connections = new AtomicLong(); // 连接编号
+    private ExecutorService executor; // 连接和房间推送都运行在其中
+
+    public HangmanServer(Dictionary dictionary, SessionStore sessions, GameJournal journal, PlayerStats stats,
+                         int port) {
+        this.dictionary = dictionary;
+        this.sessions = sessions;
+        this.journal = journal;
+        this.stats = stats;
+        this.port = port;
+    }
+
+    // 接受连接，每个连接运行在一个虚拟线程中；该方法不会返回
+    public void run() throws IOException {
+        executor = newConnectionExecutor();
+        try (ServerSocket serverSocket = new ServerSocket()) {
+            serverSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 1024);
+            System.out.printf("Hangman 服务器已启动: %s，词典共 %d 个单词%n",
+                    serverSocket.getLocalSocketAddress(), dictionary.current().size());
+            while (true) {
+                Socket socket = serverSocket.accept();
+                executor.execute(() -> serve(socket));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    // 词典重新加载后第一次使用时重建抽取表，多个线程同时重建也没有关系
+    private WordScheduler.Tables tables(WordIndex index) {
+        WordScheduler.Tables current = tables;
+        if (current == null || current.getIndex() != index) {
+            current = WordScheduler.Tables.byHardness(index);
+            tables = current;
+        }
+        return current;
+    }
+
+    // 虚拟线程需要 Java 21；在更早的 JDK 上退回到普通线程池，此时能同时保持的空闲连接数要少得多
+    private static ExecutorService newConnectionExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            System.err.println("当前 JDK 不支持虚拟线程，改用普通线程");
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    // 空闲的连接只占一个很小的行缓冲区：不使用 BufferedReader/BufferedWriter（连同编解码器各带 8K 的缓冲区），
+    // 回复在写出时编码为一个字节数组，直接写入 socket
+    private void serve(Socket socket) {
+        try (socket) {
+            socket.setTcpNoDelay(true); // 推送的事件和回复是分开写出的短行，不等待前一段的确认
+            LineReader in = new LineReader(socket.getInputStream());
+            Connection connection = new Connection(socket.getOutputStream());
+            try {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    boolean keepOpen = connection.handle(line.trim());
+                    connection.awaitJournal(); // 多个连接的记录在同一次 fsync 中落盘
+                    connection.writeReply();
+                    if (!keepOpen) {
+                        break;
+                    }
+                }
+            } finally {
+                connection.leaveRoom();
+            }
+        } catch (IOException e) {
+            // 客户端断开连接
+        }
+    }
+
+    // 按行读取 UTF-8 编码的命令，整行读入之后才解码；缓冲区从 128 字节开始，按需扩大到 MAX_LINE 字节，
+    // 更长的行整行丢弃，作为空行返回（回复 ERR BAD_COMMAND）
+    private static final class LineReader {
+        private static final int MAX_LINE = 1024;
+
+        private final InputStream in;
+        private byte[] buffer = new byte[128];
+        private int start; // 当前行的开头
+        private int end; // 已读入的数据的结尾
+
+        LineReader(InputStream in) {
+            this.in = in;
+        }
+
+        // 返回下一行（不含换行符），连接关闭时返回 null
+        String readLine() throws IOException {
+            int scan = start;
+            boolean skipping = false;
+            while (true) {
+                for (; scan < end; scan++) {
+                    if (buffer[scan] == '\n') {
+                        String line = skipping ? "" : new String(buffer, start, scan - start, StandardCharsets.UTF_8);
+                        start = scan + 1;
+                        return line;
+                    }
+                }
+                if (end == buffer.length) {
+                    if (start > 0) {
+                        System.arraycopy(buffer, start, buffer, 0, end - start);
+                        end -= start;
+                        start = 0;
+                    } else if (buffer.length < MAX_LINE) {
+                        buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                    } else {
+                        skipping = true;
+                        end = 0;
+                    }
+                    scan = end;
+                }
+                int read = in.read(buffer, end, buffer.length - end);
+                if (read < 0) {
+                    if (end == start || skipping) {
+                        return null;
+                    }
+                    String line = new String(buffer, start, end - start, StandardCharsets.UTF_8); // 最后一行没有换行符
+                    start = end;
+                    return line;
+                }
+                end += read;
+            }
+        }
+    }
+
+    // 房间的玩家或观众在连接这一端的部分：房间通知有变化时释放一个许可，这个连接自己的推送线程醒来后
+    // 调用 push 写出还没有写出的内容；多次通知合并为一次写出。房间推送的内容已经编码为字节，直接写出不再转换
+    private abstract static class RoomSubscriber implements GameRoom.Member, Runnable {
+        final Connection connection;
+        final GameRoom room;
+        private final Semaphore signal = new Semaphore(1); // 启动时先检查一次，补上加入前后发布的内容
+        private volatile boolean stopped; // 已经离开房间，推送线程醒来后退出
+        long sentVersion; // 已经写出的最新版本，只在推送线程中使用
+
+        RoomSubscriber(Connection connection, GameRoom room, long sentVersion) {
+            this.connection = connection;
+            this.room = room;
+            this.sentVersion = sentVersion;
+        }
+
+        @Override
+        public void changed() {
+            signal.release();
+        }
+
+        // 让推送线程在写完当前内容之后退出；不中断它，虚拟线程在写 socket 时被中断会关闭连接
+        void stop() {
+            stopped = true;
+            changed();
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (!stopped) {
+                    signal.acquire();
+                    signal.drainPermits();
+                    if (!stopped) {
+                        push();
+                    }
+                }
+            } catch (InterruptedException | IOException e) {
+                // 服务器关闭或者连接已断开
+            }
+        }
+
+        abstract void push() throws IOException;
+    }
+
+    // 玩家：按版本号顺序从房间读取还没有写出的事件，一次写出再 flush；
+    // 落后超过 GameRoom.HISTORY 个事件时跳到最近的事件（被跳过的事件计入 Metrics.ROOM_EVENTS_DROPPED）
+    private static final class RoomMember extends RoomSubscriber {
+        private static final int PUSH_BUFFER_SIZE = 1024;
+
+        private OutputStream out; // 合并一次写出的多个事件，第一次推送时创建，只在推送线程中使用
+
+        RoomMember(Connection connection, GameRoom room, long joinedVersion) {
+            super(connection, room, joinedVersion);
+        }
+
+        @Override
+        void push() throws IOException {
+            long oldest = room.getState().getVersion() - GameRoom.HISTORY + 1;
+            if (sentVersion + 1 < oldest) {
+                Metrics.ROOM_EVENTS_DROPPED.add(oldest - sentVersion - 1);
+                sentVersion = oldest - 1;
+            }
+            // 下一个版本还没有发布时停下，发布它的线程随后会再通知
+            GameRoom.Event event = room.event(sentVersion + 1);
+            if (event == null) {
+                return;
+            }
+            connection.writeLock.lock();
+            try {
+                if (out == null) {
+                    out = new BufferedOutputStream(connection.out, PUSH_BUFFER_SIZE);
+                }
+                do {
+                    out.write(event.getBytes());
+                    sentVersion = event.getVersion();
+                } while ((event = room.event(sentVersion + 1)) != null);
+                out.flush();
+            } finally {
+                connection.writeLock.unlock();
+            }
+        }
+    }
+
+    // 观众：只写出最新的快照；写出时阻塞（客户端读得慢）期间的变化只会替换房间中的最新快照，
+    // 醒来后直接写出那时最新的一个，中间的版本被跳过（计入 Metrics.SNAPSHOTS_SKIPPED）
+    private static final class Spectator extends RoomSubscriber {
+        Spectator(Connection connection, GameRoom room) {
+            super(connection, room, 0);
+        }
+
+        @Override
+        void push() throws IOException {
+            GameRoom.Snapshot snapshot = room.snapshot();
+            if (snapshot == null || snapshot.getVersion() <= sentVersion) {
+                return;
+            }
+            if (sentVersion > 0 && snapshot.getVersion() > sentVersion + 1) {
+                Metrics.SNAPSHOTS_SKIPPED.add(snapshot.getVersion() - sentVersion - 1);
+            }
+            connection.writeLock.lock();
+            try {
+                connection.out.write(snapshot.getBytes());
+            } finally {
+                connection.writeLock.unlock();
+            }
+            sentVersion = snapshot.getVersion();
+        }
+    }
+
+    // 一个客户端连接，游戏状态保存在会话表中，断线后可以用 RESUME 接着玩
+    private class Connection {
+        private final OutputStream out; // socket 的输出流，没有缓冲；回复和房间推送都一次写出编码好的字节
+        private final ReentrantLock writeLock = new ReentrantLock(); // 回复和房间推送不能交错写出
+        private final long number = connections.incrementAndGet();
+        private final StringBuilder reply = new StringBuilder(128);
+        private final char[] display = new char[WordIndex.MAX_WORD_LENGTH * 2];
+        private long sessionId; // 0 表示还没有会话
+        private long player = -1; // NAME 设置的玩家编号，-1 表示匿名
+        private SessionStore.Session session; // 当前命令使用的会话
+        private HangmanEngine engine; // 当前命令使用的会话中的游戏
+        private long journaled; // 本条命令追加的最后一条日志记录的序号，0 表示没有
+        private GameRoom room; // 加入或观看的房间，没有时为 null
+        private RoomSubscriber subscriber; // 在房间中的身份，玩家（RoomMember）或观众（Spectator）
+        private Future<?> pusher; // 这个连接的房间推送线程
+
+        Connection(OutputStream out) {
+            this.out = out;
+        }
+
+        // 处理一条命令，回复保存在 reply 中，返回 false 表示连接应当关闭
+        boolean handle(String line) {
+            reply.setLength(0);
+            int space = line.indexOf(' ');
+            String command = (space < 0 ? line : line.substring(0, space)).toUpperCase(Locale.ROOT);
+            String argument = space < 0 ? "" : line.substring(space + 1).trim();
+            session = sessionId == 0 ? null : sessions.get(sessionId);
+            if (session == null) {
+                sessionId = 0; // 会话已过期或被淘汰
+                engine = null;
+            } else {
+                engine = session.getEngine();
+            }
+            if (session != null && !command.equals("RESUME")) {
+                // 同一个会话可能同时被多个连接使用，按会话加锁，不影响其他会话；
+                // RESUME 自己对新会话加锁，避免同时持有两个会话的锁。等待日志落盘（awaitJournal）在释放锁之后
+                ReentrantLock lock = session.getLock();
+                lock.lock();
+                try {
+                    return dispatch(command, argument);
+                } finally {
+                    lock.unlock();
+                }
+            }
+            return dispatch(command, argument);
+        }
+
+        // 写出 reply 作为一行回复
+        void writeReply() throws IOException {
+            byte[] bytes = reply.append('\n').toString().getBytes(StandardCharsets.UTF_8);
+            writeLock.lock();
+            try {
+                out.write(bytes);
+            } finally {
+                writeLock.unlock();
+            }
+        }
+
+        private boolean dispatch(String command, String argument) {
+            switch (command) {
+                case "NEW":
+                    newGame(argument);
+                    break;
+                case "GUESS":
+                    guess(argument);
+                    break;
+                case "HINT":
+                    hint();
+                    break;
+                case "GIVEUP":
+                    if (requireGame()) {
+                        if (engine.giveUp()) { // 本轮已结束时只回复当前状态
+                            journaled = journal.giveUp(sessionId);
+                            recordResult();
+                        }
+                        reply.append("OK ");
+                        appendState();
+                    }
+                    break;
+                case "STATUS":
+                    if (requireGame()) {
+                        reply.append("OK ");
+                        appendState();
+                    }
+                    break;
+                case "SESSION":
+                    if (requireGame()) {
+                        reply.append("OK ").append(sessionId);
+                    }
+                    break;
+                case "RESUME":
+                    resume(argument);
+                    break;
+                case "STATS":
+                    reply.append("OK live=").append(sessions.getLiveSessions())
+                            .append(" capacity=").append(sessions.getCapacity())
+                            .append(" expired=").append(sessions.getExpired())
+                            .append(" evicted=").append(sessions.getEvicted())
+                            .append(" lookups=").append(sessions.getLookups())
+                            .append(" avgLookupNanos=").append(sessions.getAverageLookupNanos())
+                            .append(" maxLookupNanos=").append(sessions.getMaxLookupNanos())
+                            .append(" journalRecords=").append(journal.getRecords())
+                            .append(" journalCommits=").append(journal.getCommits())
+                            .append(" journalDropped=").append(journal.getDropped())
+                            .append(" rooms=").append(rooms.size());
+                    break;
+                case "NAME":
+                    if (!PlayerStats.isValidName(argument)) {
+                        reply.append("ERR BAD_NAME");
+                    } else {
+                        player = stats.player(argument);
+                        reply.append("OK ").append(argument);
+                    }
+                    break;
+                case "PROFILE":
+                    if (player < 0) {
+                        reply.append("ERR NO_NAME");
+                    } else {
+                        appendProfile();
+                    }
+                    break;
+                case "TOP":
+                    top(argument);
+                    break;
+                case "JOIN":
+                    joinRoom(argument);
+                    break;
+                case "RGUESS":
+                    roomGuess(argument);
+                    break;
+                case "WATCH":
+                    watchRoom(argument);
+                    break;
+                case "RNEXT":
+                    if (requirePlayer()) {
+                        if (!room.nextRound(dictionary.current(), number)) {
+                            GameRoom.State state = room.getState();
+                            reply.append(state != null && !state.isOver() ? "ERR ROUND_NOT_OVER " : "ERR NO_WORDS ");
+                        } else {
+                            reply.append("OK ");
+                        }
+                        appendRoomState();
+                    }
+                    break;
+                case "ROOM":
+                    if (requireRoom()) {
+                        reply.append("OK ").append(room.getName()).append(' ').append(room.size()).append(' ')
+                                .append(room.getSpectatorCount()).append(' ');
+                        appendRoomState();
+                    }
+                    break;
+                case "LEAVE":
+                    if (requireRoom()) {
+                        leaveRoom();
+                        reply.append("OK");
+                    }
+                    break;
+                case "QUIT":
+                    reply.append("BYE");
+                    return false;
+                default:
+                    reply.append("ERR BAD_COMMAND");
+                    break;
+            }
+            return true;
+        }
+
+        private void joinRoom(String argument) {
+            String[] parts = argument.split("\\s+");
+            if (parts[0].isEmpty() || parts.length > 2) {
+                reply.append("ERR BAD_ROOM");
+                return;
+            }
+            Difficulty difficulty = Difficulty.MEDIUM;
+            if (parts.length == 2) {
+                try {
+                    difficulty = Difficulty.valueOf(parts[1].toUpperCase(Locale.ROOT));
+                } catch (IllegalArgumentException e) {
+                    reply.append("ERR BAD_DIFFICULTY");
+                    return;
+                }
+            }
+            leaveRoom();
+            Difficulty roomDifficulty = difficulty;
+            WordIndex index = dictionary.current();
+            // 加入和最后一个成员离开时删除房间都在 compute 中进行，不会加入一个刚被删除的房间
+            room = rooms.compute(parts[0], (name, existing) -> {
+                GameRoom joined = existing != null ? existing : new GameRoom(name, roomDifficulty);
+                if (joined.getState() == null) {
+                    joined.nextRound(index, number);
+                }
+                GameRoom.State state = joined.getState();
+                subscriber = new RoomMember(this, joined, state == null ? 0 : state.getVersion());
+                joined.join(subscriber);
+                return joined;
+            });
+            if (room.getState() == null) {
+                leaveRoom();
+                reply.append("ERR NO_WORDS");
+                return;
+            }
+            pusher = executor.submit(subscriber);
+            reply.append("OK ").append(room.getName()).append(' ').append(room.size()).append(' ');
+            appendRoomState();
+        }
+
+        // 观看已有的房间，不会创建房间
+        private void watchRoom(String argument) {
+            if (argument.isEmpty() || argument.indexOf(' ') >= 0) {
+                reply.append("ERR BAD_ROOM");
+                return;
+            }
+            leaveRoom();
+            // 与删除房间一样在 computeIfPresent 中加入，不会观看一个刚被删除的房间
+            room = rooms.computeIfPresent(argument, (name, existing) -> {
+                subscriber = new Spectator(this, existing);
+                existing.watch(subscriber);
+                return existing;
+            });
+            if (room == null) {
+                subscriber = null;
+                reply.append("ERR NO_SUCH_ROOM");
+                return;
+            }
+            pusher = executor.submit(subscriber);
+            reply.append("OK ").append(room.getName()).append(' ').append(room.size()).append(' ')
+                    .append(room.getSpectatorCount());
+        }
+
+        private void roomGuess(String argument) {
+            if (!requirePlayer()) {
+                return;
+            }
+            GameRoom.State state = room.getState();
+            if (argument.length() != 1 || state.getAlphabet().indexOf(argument.charAt(0)) < 0) {
+                reply.append("ERR BAD_LETTER");
+                return;
+            }
+            long start = System.nanoTime();
+            int result = room.guess(argument.charAt(0), number);
+            Metrics.ROOM_GUESS.recordSince(start);
+            reply.append(GameRoom.resultName(result)).append(' ');
+            appendRoomState();
+        }
+
+        // 离开房间（或停止观看）并停止推送线程，最后一个玩家或观众离开时删除房间
+        void leaveRoom() {
+            if (room == null) {
+                return;
+            }
+            GameRoom left = room;
+            RoomSubscriber leaving = subscriber;
+            rooms.computeIfPresent(left.getName(), (name, existing) -> {
+                if (leaving instanceof Spectator) {
+                    existing.unwatch(leaving);
+                } else {
+                    existing.leave(leaving);
+                }
+                return existing.isEmpty() ? null : existing;
+            });
+            leaving.stop();
+            if (pusher != null) {
+                pusher.cancel(false); // 还没有开始运行时不再运行
+            }
+            room = null;
+            subscriber = null;
+            pusher = null;
+        }
+
+        private boolean requireRoom() {
+            if (room == null) {
+                reply.append("ERR NO_ROOM");
+                return false;
+            }
+            return true;
+        }
+
+        // 以玩家身份在房间中，观众不能猜字母或开始新的一轮
+        private boolean requirePlayer() {
+            if (!requireRoom()) {
+                return false;
+            }
+            if (subscriber instanceof Spectator) {
+                reply.append("ERR SPECTATOR");
+                return false;
+            }
+            return true;
+        }
+
+        // 房间的当前状态，回复之前可能已经有其他玩家改变了状态，推送的事件会带来之后的变化
+        private void appendRoomState() {
+            GameRoom.State state = room.getState();
+            if (state != null) {
+                state.appendTo(reply);
+            }
+        }
+
+        private void newGame(String argument) {
+            Difficulty difficulty = Difficulty.MEDIUM;
+            GameMode mode = GameMode.NORMAL;
+            for (String option : argument.toUpperCase(Locale.ROOT).split("\\s+")) {
+                if (option.isEmpty()) {
+                    continue;
+                }
+                if (option.equals("EVIL")) {
+                    mode = GameMode.EVIL;
+                    continue;
+                }
+                try {
+                    difficulty = Difficulty.valueOf(option);
+                } catch (IllegalArgumentException e) {
+                    reply.append("ERR BAD_DIFFICULTY");
+                    return;
+                }
+            }
+            WordScheduler.Tables tables = tables(dictionary.current());
+            WordIndex index = tables.getIndex();
+            if (difficulty.bandEnd(index) <= difficulty.bandStart(index)) {
+                reply.append("ERR NO_WORDS");
+                return;
+            }
+            if (session == null) {
+                session = sessions.create();
+                sessionId = session.getId();
+                engine = session.getEngine();
+                session.getLock().lock();
+                try {
+                    start(tables, difficulty, mode);
+                } finally {
+                    session.getLock().unlock();
+                }
+            } else {
+                start(tables, difficulty, mode);
+            }
+            reply.append("OK ");
+            appendState();
+        }
+
+        private void start(WordScheduler.Tables tables, Difficulty difficulty, GameMode mode) {
+            long start = System.nanoTime();
+            int wordId = session.getScheduler().next(tables, difficulty);
+            engine.start(tables.getIndex(), wordId, difficulty, mode);
+            Metrics.NEW_GAME.recordSince(start); // 选词和开局，不包括写日志
+            journaled = journal.newGame(sessionId, tables.getIndex(), wordId, difficulty, mode);
+            session.setGameStart(System.nanoTime());
+            session.setPlayer(player); // 这一局的战绩记在开局的玩家名下，即使之后换了连接
+            if (player >= 0) {
+                stats.gameStarted(player, difficulty);
+            }
+        }
+
+        // 一局刚刚结束（猜中、失败或放弃）时更新玩家统计
+        private void recordResult() {
+            (engine.isWon() ? Metrics.GAMES_WON : Metrics.GAMES_LOST).increment();
+            if (session.getPlayer() >= 0) {
+                stats.gameFinished(session.getPlayer(), engine.getDifficulty(), engine.isWon(), engine.getErrors(),
+                        engine.getHintsUsed(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - session.getGameStart()));
+            }
+        }
+
+        private void appendProfile() {
+            reply.append("OK score=").append(stats.getScore(player));
+            for (Difficulty difficulty : Difficulty.values()) {
+                reply.append(' ').append(difficulty)
+                        .append(" games=").append(stats.getGames(player, difficulty))
+                        .append(" wins=").append(stats.getWins(player, difficulty))
+                        .append(" errors=").append(stats.getErrors(player, difficulty))
+                        .append(" hints=").append(stats.getHints(player, difficulty))
+                        .append(" avgMillis=").append(stats.getAverageSolveMillis(player, difficulty))
+                        .append(" bestMillis=").append(stats.getBestSolveMillis(player, difficulty))
+                        .append(" streak=").append(stats.getStreak(player, difficulty))
+                        .append('/').append(stats.getBestStreak(player, difficulty));
+            }
+        }
+
+        private void top(String argument) {
+            int count = 10;
+            if (!argument.isEmpty()) {
+                try {
+                    count = Integer.parseInt(argument);
+                } catch (NumberFormatException e) {
+                    reply.append("ERR BAD_COUNT");
+                    return;
+                }
+            }
+            PlayerStats.Leaderboard leaderboard = stats.getLeaderboard(); // 不可变的快照，不需要加锁
+            count = Math.max(0, Math.min(count, leaderboard.size()));
+            reply.append("OK");
+            for (int rank = 0; rank < count; rank++) {
+                reply.append(' ').append(stats.name(leaderboard.player(rank))).append('=').append(leaderboard.score(rank));
+            }
+        }
+
+        // 等待本条命令的日志记录落盘
+        void awaitJournal() throws IOException {
+            if (journaled != 0) {
+                journal.awaitDurable(journaled);
+                journaled = 0;
+            }
+        }
+
+        private void resume(String argument) {
+            long id;
+            try {
+                id = Long.parseLong(argument);
+            } catch (NumberFormatException e) {
+                reply.append("ERR BAD_SESSION");
+                return;
+            }
+            SessionStore.Session resumed = sessions.get(id);
+            if (resumed == null) {
+                reply.append("ERR NO_SESSION");
+                return;
+            }
+            sessionId = id;
+            session = resumed;
+            resumed.getLock().lock();
+            try {
+                engine = resumed.getEngine();
+                reply.append("OK ");
+                appendState();
+            } finally {
+                resumed.getLock().unlock();
+            }
+        }
+
+        private void guess(String argument) {
+            if (!requireGame()) {
+                return;
+            }
+            if (argument.length() != 1) {
+                reply.append("ERR BAD_LETTER");
+                return;
+            }
+            Alphabet alphabet = engine.getAlphabet();
+            int code = alphabet.indexOf(argument.charAt(0));
+            if (code < 0) {
+                reply.append("ERR BAD_LETTER");
+                return;
+            }
+            char letter = alphabet.letter(code);
+            long start = System.nanoTime();
+            int result = engine.guess(letter);
+            Metrics.CHECK_LETTER.recordSince(start);
+            if (result != HangmanEngine.ALREADY_GUESSED) {
+                journaled = journal.guess(sessionId, letter, result);
+            }
+            if (result == HangmanEngine.WON || result == HangmanEngine.LOST) {
+                recordResult();
+            }
+            switch (result) {
+                case HangmanEngine.HIT:
+                    reply.append("HIT ");
+                    break;
+                case HangmanEngine.MISS:
+                    reply.append("MISS ");
+                    break;
+                case HangmanEngine.WON:
+                    reply.append("WON ");
+                    break;
+                case HangmanEngine.LOST:
+                    reply.append("LOST ");
+                    break;
+                default:
+                    reply.append("REPEAT ");
+                    break;
+            }
+            appendState();
+        }
+
+        private void hint() {
+            if (!requireGame()) {
+                return;
+            }
+            long start = System.nanoTime();
+            char letter = engine.hint();
+            Metrics.GIVE_HINT.recordSince(start);
+            if (letter == 0) {
+                reply.append("ERR NO_HINTS");
+                return;
+            }
+            journaled = journal.hint(sessionId, letter);
+            if (engine.isWon()) {
+                recordResult(); // 提示揭示了最后一个字母
+            }
+            reply.append("HINT ").append(letter).append(' ');
+            appendState();
+        }
+
+        private boolean requireGame() {
+            if (session == null) {
+                reply.append("ERR NO_GAME");
+                return false;
+            }
+            return true;
+        }
+
+        private void appendState() {
+            engine.fillDisplay(display);
+            int length = engine.length();
+            for (int i = 0; i < length; i++) {
+                reply.append(display[i * 2]);
+            }
+            reply.append(' ').append(engine.getErrors()).append('/').append(HangmanEngine.MAX_ERRORS)
+                    .append(' ').append(engine.getHintsUsed()).append('/')
+                    .append(engine.getHintsUsed() + engine.getRemainingHints());
+            if (engine.isWon()) {
+                reply.append(" WON ").append(engine.getWord());
+            } else if (engine.isLost()) {
+                reply.append(" LOST ").append(engine.getWord());
+            } else {
+                reply.append(" PLAYING");
+            }
+        }
+    }
+}
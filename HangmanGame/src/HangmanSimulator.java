@@ -0,0 +1,209 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+// 无界面的批量模拟程序，用于校准 Difficulty 的难度区间、难度分数的权重、MAX_ERRORS 和提示次数
+// 用与游戏相同的规则（HangmanEngine）对每个难度各玩若干局，在所有核上用 fork/join 并行运行
+// 游戏按编号范围对半拆分成固定大小的子任务，每个子任务的随机数种子只由总种子、难度和起始编号决定，
+// 所以同样的种子在任何核数的机器上都得到相同的结果
+// 用法: java HangmanSimulator [每个难度的局数] [种子] [策略 frequency|random] [词典文件] [单词统计输出文件]
+public class HangmanSimulator {
+    private static final int LEAF_GAMES = 4096; // 子任务不再拆分的局数
+    private static final int MAX_GUESSES = Alphabet.MAX_LETTERS; // 猜字母的次数不会超过字母表的大小
+
+    private final WordIndex index;
+    private final GuessStrategy strategy;
+    private final long seed;
+
+    // 每个单词的统计，多个子任务可能同时更新同一个单词
+    private final AtomicIntegerArray wordGames;
+    private final AtomicIntegerArray wordWins;
+    private final AtomicIntegerArray wordGuesses; // 猜中的局中猜字母的次数之和
+    private final AtomicIntegerArray wordHints;
+
+    public HangmanSimulator(WordIndex index, GuessStrategy strategy, long seed) {
+        this.index = index;
+        this.strategy = strategy;
+        this.seed = seed;
+        int size = index.size();
+        wordGames = new AtomicIntegerArray(size);
+        wordWins = new AtomicIntegerArray(size);
+        wordGuesses = new AtomicIntegerArray(size);
+        wordHints = new AtomicIntegerArray(size);
+    }
+
+    // 一个难度的统计结果
+    public static final class Stats {
+        private long games;
+        private long wins;
+        private long guessesToSolve; // 猜中的局中猜字母的次数之和（不含提示）
+        private long hints;
+        private final long[] guessHistogram = new long[MAX_GUESSES + 1]; // 猜中时猜字母的次数分布
+
+        private Stats merge(Stats other) {
+            games += other.games;
+            wins += other.wins;
+            guessesToSolve += other.guessesToSolve;
+            hints += other.hints;
+            for (int i = 0; i <= MAX_GUESSES; i++) {
+                guessHistogram[i] += other.guessHistogram[i];
+            }
+            return this;
+        }
+
+        public long getGames() {
+            return games;
+        }
+
+        public double getWinRate() {
+            return games == 0 ? 0 : (double) wins / games;
+        }
+
+        public double getAverageGuessesToSolve() {
+            return wins == 0 ? 0 : (double) guessesToSolve / wins;
+        }
+
+        public double getAverageHints() {
+            return games == 0 ? 0 : (double) hints / games;
+        }
+
+        // 猜中的局中有 fraction 比例猜字母的次数不超过该值
+        public int guessesPercentile(double fraction) {
+            long target = (long) Math.ceil(wins * fraction);
+            long seen = 0;
+            for (int i = 0; i <= MAX_GUESSES; i++) {
+                seen += guessHistogram[i];
+                if (seen >= target && seen > 0) {
+                    return i;
+                }
+            }
+            return 0;
+        }
+    }
+
+    // 编号在 [start, end) 之间的局
+    private final class SimulationTask extends RecursiveTask<Stats> {
+        private final Difficulty difficulty;
+        private final long start;
+        private final long end;
+
+        SimulationTask(Difficulty difficulty, long start, long end) {
+            this.difficulty = difficulty;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected Stats compute() {
+            if (end - start <= LEAF_GAMES) {
+                return play();
+            }
+            long middle = (start + end) >>> 1;
+            SimulationTask left = new SimulationTask(difficulty, start, middle);
+            left.fork();
+            Stats right = new SimulationTask(difficulty, middle, end).compute();
+            return left.join().merge(right);
+        }
+
+        private Stats play() {
+            Stats stats = new Stats();
+            Random random = new Random(seed ^ (difficulty.ordinal() + 1) * 0x9E3779B97F4A7C15L ^ start * 0xC2B2AE3D27D4EB4FL);
+            HangmanEngine engine = new HangmanEngine();
+            for (long game = start; game < end; game++) {
+                int wordId = difficulty.pickWord(index, random);
+                engine.start(index, wordId, difficulty);
+                int guesses = 0;
+                while (!engine.isOver()) {
+                    if (engine.getRemainingHints() > 0 && strategy.useHint(engine)) {
+                        engine.hint();
+                    } else if (engine.guess(strategy.nextGuess(engine, random)) != HangmanEngine.ALREADY_GUESSED) {
+                        guesses++;
+                    } else {
+                        throw new IllegalStateException("策略猜了已经猜过的字母");
+                    }
+                }
+
+                stats.games++;
+                stats.hints += engine.getHintsUsed();
+                wordGames.incrementAndGet(wordId);
+                wordHints.addAndGet(wordId, engine.getHintsUsed());
+                if (engine.isWon()) {
+                    stats.wins++;
+                    stats.guessesToSolve += guesses;
+                    stats.guessHistogram[guesses]++;
+                    wordWins.incrementAndGet(wordId);
+                    wordGuesses.addAndGet(wordId, guesses);
+                }
+            }
+            return stats;
+        }
+    }
+
+    // 用 pool 中的线程对一个难度模拟 games 局，这个难度没有单词时返回空的统计
+    public Stats simulate(ForkJoinPool pool, Difficulty difficulty, long games) {
+        if (difficulty.pickWord(index, new Random(seed)) < 0) {
+            return new Stats();
+        }
+        return pool.invoke(new SimulationTask(difficulty, 0, games));
+    }
+
+    // 把每个单词的统计写成 CSV，只包含至少玩过一局的单词
+    public void writeWordStats(Path path) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            out.write("word,length,hardness,games,wins,win_rate,avg_guesses_to_solve,avg_hints\n");
+            for (int id = 0; id < index.size(); id++) {
+                int games = wordGames.get(id);
+                if (games == 0) {
+                    continue;
+                }
+                int wins = wordWins.get(id);
+                out.write(String.format("%s,%d,%.3f,%d,%d,%.4f,%.2f,%.2f%n", index.word(id), index.length(id),
+                        index.hardness(id), games, wins,
+                        (double) wins / games, wins == 0 ? 0.0 : (double) wordGuesses.get(id) / wins,
+                        (double) wordHints.get(id) / games));
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        long games = args.length > 0 ? Long.parseLong(args[0]) : 1_000_000;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 42;
+        GuessStrategy strategy = GuessStrategy.forName(args.length > 2 ? args[2] : "frequency");
+        Path wordList = Paths.get(args.length > 3 ? args[3] : "wordlist.txt");
+        Path wordStats = Paths.get(args.length > 4 ? args[4] : "simulation-words.csv");
+
+        WordIndex index = WordIndex.load(wordList);
+        HangmanSimulator simulator = new HangmanSimulator(index, strategy, seed);
+        ForkJoinPool pool = new ForkJoinPool();
+        System.out.printf("词典 %d 个单词，每个难度 %d 局，种子 %d，%d 个线程%n",
+                index.size(), games, seed, pool.getParallelism());
+        System.out.printf("%-8s %10s %8s %10s %8s %8s %10s%n",
+                "难度", "局数", "胜率", "平均猜测", "中位数", "P90", "平均提示");
+        long totalGames = 0;
+        long start = System.nanoTime();
+        try {
+            for (Difficulty difficulty : Difficulty.values()) {
+                Stats stats = simulator.simulate(pool, difficulty, games);
+                totalGames += stats.getGames();
+                System.out.printf("%-8s %10d %7.2f%% %10.2f %8d %8d %10.3f%n", difficulty, stats.getGames(),
+                        stats.getWinRate() * 100, stats.getAverageGuessesToSolve(), stats.guessesPercentile(0.5),
+                        stats.guessesPercentile(0.9), stats.getAverageHints());
+            }
+        } finally {
+            pool.shutdown();
+        }
+        long elapsed = System.nanoTime() - start;
+        System.out.printf("共 %d 局，用时 %d ms，%.0f 局/秒%n",
+                totalGames, elapsed / 1_000_000, totalGames * 1e9 / elapsed);
+
+        simulator.writeWordStats(wordStats);
+        System.out.println("单词统计已写入 " + wordStats);
+    }
+}
@@ -0,0 +1,128 @@
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+// 计算每个单词的难度分数，构建词典（包括 DictionaryCompiler 离线编译）时在所有核上并行运行，结果保存在词典映像中
+// 分数越大越难，由三部分相加：
+//   字母稀有度：单词中各个不同字母的 -log2(包含该字母的单词比例) 的平均值，含有 Q、Z、X 等字母的单词更难猜
+//              （比例按词典本身统计，与字母表无关）
+//   不同字母数：DISTINCT_WEIGHT / 不同字母数，不同字母越少，每次猜中的机会越少
+//   模式歧义度：log2(与它的常见字母骨架相同的单词数)；骨架只保留词典中最常见的 COMMON_LETTERS 个字母，其余位置留空，
+//              相当于玩家猜完常见字母后看到的局面，例如 _ATCH 这样还有很多单词可选的模式很难猜
+// 权重是经验值，可以用 HangmanSimulator 输出的单词统计校准
+final class HardnessScorer {
+    private static final int COMMON_LETTERS = 8;
+    private static final float DISTINCT_WEIGHT = 8f;
+    private static final double LOG2 = Math.log(2);
+
+    private HardnessScorer() {
+    }
+
+    static float[] score(WordIndex index) {
+        int count = index.size();
+        int letters = index.getAlphabet().size();
+
+        // 每个字母出现在多少个单词中，由此得到字母的稀有度和最常见的字母
+        int[] letterCounts = IntStream.range(0, count).parallel().collect(() -> new int[letters], (counts, id) -> {
+            for (long set = index.letterSet(id); set != 0; set &= set - 1) {
+                counts[Long.numberOfTrailingZeros(set)]++;
+            }
+        }, (a, b) -> {
+            for (int c = 0; c < letters; c++) {
+                a[c] += b[c];
+            }
+        });
+        float[] rarity = new float[letters];
+        for (int c = 0; c < letters; c++) {
+            rarity[c] = (float) -log2(Math.max(letterCounts[c], 1) / (double) Math.max(count, 1));
+        }
+        long common = commonLetters(letterCounts);
+
+        // 每个单词的骨架，排序后用二分查找统计相同骨架的单词数
+        long[] skeletons = new long[count];
+        IntStream.range(0, count).parallel().forEach(id -> skeletons[id] = skeleton(index, id, common));
+        long[] sorted = skeletons.clone();
+        Arrays.parallelSort(sorted);
+
+        float[] scores = new float[count];
+        IntStream.range(0, count).parallel().forEach(id -> {
+            long set = index.letterSet(id);
+            int distinct = Long.bitCount(set);
+            float letterRarity = 0;
+            for (; set != 0; set &= set - 1) {
+                letterRarity += rarity[Long.numberOfTrailingZeros(set)];
+            }
+            int group = upperBound(sorted, skeletons[id]) - lowerBound(sorted, skeletons[id]);
+            scores[id] = letterRarity / distinct + DISTINCT_WEIGHT / distinct + (float) log2(group);
+        });
+        return scores;
+    }
+
+    // 按分数从低到高排列的单词编号，分数相同时按编号排列
+    static int[] rank(float[] scores) {
+        // 分数都不小于 0，浮点数的位模式与大小顺序一致，可以和编号拼成一个 long 直接排序
+        long[] keys = new long[scores.length];
+        Arrays.parallelSetAll(keys, id -> (long) Float.floatToIntBits(scores[id]) << 32 | id);
+        Arrays.parallelSort(keys);
+        int[] order = new int[scores.length];
+        Arrays.parallelSetAll(order, i -> (int) keys[i]);
+        return order;
+    }
+
+    // 出现在最多单词中的 COMMON_LETTERS 个字母的位掩码（字母表较小时为全部字母）
+    private static long commonLetters(int[] letterCounts) {
+        long mask = 0;
+        for (int n = 0; n < Math.min(COMMON_LETTERS, letterCounts.length); n++) {
+            int best = -1;
+            for (int c = 0; c < letterCounts.length; c++) {
+                if ((mask & (1L << c)) == 0 && (best < 0 || letterCounts[c] > letterCounts[best])) {
+                    best = c;
+                }
+            }
+            mask |= 1L << best;
+        }
+        return mask;
+    }
+
+    // 单词骨架的 64 位哈希（FNV-1a），不同长度的单词骨架不同
+    private static long skeleton(WordIndex index, int id, long common) {
+        int length = index.length(id);
+        long hash = 0xCBF29CE484222325L ^ length;
+        for (int p = 0; p < length; p++) {
+            int c = index.letterCode(id, p);
+            hash = (hash ^ ((common & (1L << c)) != 0 ? c + 1 : 0)) * 0x100000001B3L;
+        }
+        return hash;
+    }
+
+    private static int lowerBound(long[] sorted, long key) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (sorted[middle] < key) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static int upperBound(long[] sorted, long key) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (sorted[middle] <= key) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static double log2(double x) {
+        return Math.log(x) / LOG2;
+    }
+}
@@ -0,0 +1,243 @@
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+// 重放事件日志（见 GameJournal）：按记录的顺序在 HangmanEngine 上重新执行每一轮游戏，重建每个会话的状态
+// 日志映射到内存中顺序扫描，每条记录只是一次引擎调用，不需要解析文本
+// 记录中的词典校验和与当前词典相同时直接使用记录的单词编号，否则按单词查找；当前词典中没有的单词，这一局无法重建
+// 重放的结果与记录的结果（猜字母的结果、提示的字母）不一致时计为不一致的事件，例如词典变化后的邪恶模式
+//
+// 用法: java JournalReplay <日志文件> [词典文件] [会话编号]
+//   不指定会话编号时输出统计信息：记录数、会话数、各种结局的局数、不一致的事件数和重放速度
+//   指定会话编号时逐条输出这个会话的事件和每个事件之后的状态（图形界面的会话编号为 0）
+// 服务器启动时用 restore 把日志中的会话恢复到会话表中
+public class JournalReplay implements GameJournal.Visitor {
+    private final WordIndex index;
+    private final Map<Long, HangmanEngine> games = new HashMap<>();
+    private final Map<Long, Long> lastRecords = new HashMap<>(); // 每个会话最后一条记录的时间
+    private final Set<Long> unplayable = new HashSet<>(); // 当前这一局无法重建的会话，之后的事件被跳过
+    private Map<String, Integer> wordIds; // 按单词查找编号，词典与记录的不同时才构建
+    private final char[] display = new char[WordIndex.MAX_WORD_LENGTH * 2];
+    private boolean tracing;
+    private long tracedSession;
+
+    private long records;
+    private long started;
+    private long won;
+    private long lost;
+    private long gaveUp;
+    private long skipped; // 因为单词不在当前词典中而跳过的事件
+    private long mismatches;
+
+    public JournalReplay(WordIndex index) {
+        this.index = index;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("用法: java JournalReplay <日志文件> [词典文件] [会话编号]");
+            return;
+        }
+        Path journal = Paths.get(args[0]);
+        WordIndex index = WordIndex.load(Paths.get(args.length > 1 ? args[1] : "wordlist.txt"));
+        JournalReplay replay = new JournalReplay(index);
+        if (args.length > 2) {
+            replay.trace(Long.parseLong(args[2]));
+        }
+
+        long start = System.nanoTime();
+        long end = replay.replay(journal);
+        long elapsed = System.nanoTime() - start;
+        replay.finish();
+
+        long size = Files.size(journal);
+        if (end < size) {
+            System.out.printf("日志末尾有 %d 字节不完整的记录%n", size - end);
+        }
+        System.out.printf("记录 %d 条，会话 %d 个，共 %d 局：猜中 %d，失败 %d，放弃 %d，未结束 %d%n",
+                replay.records, replay.games.size(), replay.started, replay.won, replay.lost, replay.gaveUp,
+                replay.started - replay.won - replay.lost - replay.gaveUp);
+        System.out.printf("单词不在当前词典中而跳过 %d 个事件，与记录不一致 %d 个事件%n", replay.skipped, replay.mismatches);
+        System.out.printf("重放耗时 %.1f ms，%.0f 条记录/秒%n", elapsed / 1e6, replay.records * 1e9 / Math.max(1, elapsed));
+    }
+
+    // 把日志中的会话恢复到会话表中，会话编号和每个会话最后一局的状态与崩溃前相同，返回恢复的会话数
+    // 会话的空闲时间从它最后一条记录算起，已经空闲超过会话表 ttl 的会话不恢复（崩溃前也已经被清理了）
+    // 选词器的状态不在日志中，恢复的会话重新开始不重复的选词顺序
+    public static int restore(Path journal, WordIndex index, SessionStore sessions) throws IOException {
+        if (!Files.isRegularFile(journal) || GameJournal.version(journal) != GameJournal.VERSION) {
+            return 0; // 旧版本的日志在打开追加时改名保留
+        }
+        JournalReplay replay = new JournalReplay(index);
+        replay.replay(journal);
+        int restored = 0;
+        for (Map.Entry<Long, HangmanEngine> game : replay.games.entrySet()) {
+            long id = game.getKey();
+            if (replay.unplayable.contains(id)) {
+                sessions.reserveIds(id + 1); // 不恢复，但编号也不能再分配给新会话
+            } else if (sessions.restore(id, game.getValue(), replay.lastRecords.get(id)) != null) {
+                restored++;
+            }
+        }
+        return restored;
+    }
+
+    // 逐条输出一个会话的事件
+    public void trace(long session) {
+        tracing = true;
+        tracedSession = session;
+    }
+
+    // 重放整个日志文件，返回有效内容的结束位置
+    public long replay(Path journal) throws IOException {
+        try (FileChannel channel = FileChannel.open(journal, StandardOpenOption.READ)) {
+            return GameJournal.read(channel, this);
+        }
+    }
+
+    // 统计所有会话最后一局的结局
+    private void finish() {
+        for (Map.Entry<Long, HangmanEngine> game : games.entrySet()) {
+            if (!unplayable.contains(game.getKey())) {
+                count(game.getValue());
+            }
+        }
+    }
+
+    private void count(HangmanEngine engine) {
+        if (engine.isWon()) {
+            won++;
+        } else if (engine.isLost()) {
+            if (engine.getErrors() >= HangmanEngine.MAX_ERRORS) {
+                lost++;
+            } else {
+                gaveUp++;
+            }
+        }
+    }
+
+    @Override
+    public void newGame(long session, long time, Difficulty difficulty, GameMode mode, int wordId, long checksum,
+                        String word) {
+        records++;
+        lastRecords.put(session, time);
+        HangmanEngine engine = games.get(session);
+        if (engine == null) {
+            engine = new HangmanEngine();
+            games.put(session, engine);
+        } else if (!unplayable.remove(session)) {
+            count(engine); // 上一局的结局，没有重建的局不统计
+        }
+        int id = checksum != 0 && checksum == index.checksum() ? wordId : lookup(word);
+        if (id < 0) {
+            unplayable.add(session);
+            skipped++;
+            if (traced(session)) {
+                trace(time, "NEW " + difficulty + " " + mode + " " + word + "（不在当前词典中）", null);
+            }
+            return;
+        }
+        engine.start(index, id, difficulty, mode);
+        started++;
+        if (traced(session)) {
+            trace(time, "NEW " + difficulty + " " + mode, engine);
+        }
+    }
+
+    @Override
+    public void guess(long session, long time, char letter, int result) {
+        HangmanEngine engine = engine(session, time);
+        if (engine == null) {
+            return;
+        }
+        int replayed = engine.guess(letter);
+        if (replayed != result) {
+            mismatches++;
+        }
+        if (traced(session)) {
+            trace(time, "GUESS " + letter + (replayed != result ? "（结果与记录不一致）" : ""), engine);
+        }
+    }
+
+    @Override
+    public void hint(long session, long time, char letter) {
+        HangmanEngine engine = engine(session, time);
+        if (engine == null) {
+            return;
+        }
+        boolean same = letter == 0 ? engine.useHint() : engine.hint() == letter;
+        if (!same) {
+            mismatches++;
+        }
+        if (traced(session)) {
+            trace(time, (letter == 0 ? "HINT" : "HINT " + letter) + (same ? "" : "（结果与记录不一致）"), engine);
+        }
+    }
+
+    @Override
+    public void giveUp(long session, long time) {
+        HangmanEngine engine = engine(session, time);
+        if (engine == null) {
+            return;
+        }
+        engine.giveUp();
+        if (traced(session)) {
+            trace(time, "GIVEUP", engine);
+        }
+    }
+
+    // 事件所属会话当前这一局的游戏，无法重建时返回 null
+    private HangmanEngine engine(long session, long time) {
+        records++;
+        lastRecords.put(session, time);
+        if (unplayable.contains(session)) {
+            skipped++;
+            return null;
+        }
+        HangmanEngine engine = games.get(session);
+        if (engine == null) {
+            mismatches++; // 没有 NEW_GAME 就开始猜，日志不完整
+        }
+        return engine;
+    }
+
+    // 单词在当前词典中的编号，不存在时返回 -1
+    private int lookup(String word) {
+        if (wordIds == null) {
+            wordIds = new HashMap<>();
+            for (int id = index.size() - 1; id >= 0; id--) {
+                wordIds.put(index.word(id), id); // 重复的单词保留编号最小的一个
+            }
+        }
+        Integer id = wordIds.get(word);
+        return id == null ? -1 : id;
+    }
+
+    private boolean traced(long session) {
+        return tracing && session == tracedSession;
+    }
+
+    private void trace(long time, String event, HangmanEngine engine) {
+        StringBuilder line = new StringBuilder(80).append(Instant.ofEpochMilli(time)).append(' ').append(event);
+        if (engine != null) {
+            engine.fillDisplay(display);
+            line.append("  ").append(display, 0, engine.length() * 2 - 1)
+                    .append("  错误 ").append(engine.getErrors()).append('/').append(HangmanEngine.MAX_ERRORS)
+                    .append("  提示 ").append(engine.getHintsUsed());
+            if (engine.isWon()) {
+                line.append("  猜中 ").append(engine.getWord());
+            } else if (engine.isLost()) {
+                line.append("  结束 ").append(engine.getWord());
+            }
+        }
+        System.out.println(line);
+    }
+}
@@ -0,0 +1,136 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// 延迟直方图（纳秒）：桶按 2 的幂分段，每段再等分为 SUB_BUCKETS 个子桶，相对误差不超过 1/SUB_BUCKETS，
+// 0 到 2^63 的任何延迟都有对应的桶，不需要预先知道范围
+// 记录一次延迟只是对桶、总和和次数的原子加法，不分配对象，可以在多个线程中同时记录；
+// 百分位数只在读取时（JMX 查询、文本输出）遍历所有桶计算
+// 通过 JMX 以 MXBean 的形式发布（见 Metrics.HistogramMXBean）
+public final class LatencyHistogram implements Metrics.HistogramMXBean {
+    private static final int SUB_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    static final int BUCKETS = (64 - SUB_BITS + 1) * SUB_BUCKETS;
+
+    private final String name;
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    public LatencyHistogram(String name) {
+        this.name = name;
+    }
+
+    // 记录一次延迟，负数按 0 处理
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        buckets.incrementAndGet(bucket(nanos));
+        count.increment();
+        sum.add(nanos);
+        if (nanos > max.get()) {
+            max.accumulateAndGet(nanos, Math::max);
+        }
+    }
+
+    // 记录从 startNanos（System.nanoTime()）到现在的延迟
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    // 延迟所在的桶：小于 SUB_BUCKETS 的值每个值一个桶，之后每段 [2^e, 2^(e+1)) 等分为 SUB_BUCKETS 个桶
+    static int bucket(long nanos) {
+        if (nanos < SUB_BUCKETS) {
+            return (int) nanos;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        int sub = (int) (nanos >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    // 桶中最大的值
+    static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lower = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return lower + (1L << shift) - 1;
+    }
+
+    // 把各个桶的计数复制到 dst（长度为 BUCKETS），用于计算一段时间内的分布
+    public void snapshot(long[] dst) {
+        for (int i = 0; i < BUCKETS; i++) {
+            dst[i] = buckets.get(i);
+        }
+    }
+
+    // 分布 counts 的第 quantile 分位数（取所在桶的上界），没有数据时返回 0
+    static long percentile(long[] counts, double quantile) {
+        long total = 0;
+        for (long c : counts) {
+            total += c;
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(quantile * total);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= Math.max(rank, 1)) {
+                return upperBound(i);
+            }
+        }
+        return upperBound(counts.length - 1);
+    }
+
+    private long percentile(double quantile) {
+        long[] counts = new long[BUCKETS];
+        snapshot(counts);
+        return Math.min(percentile(counts, quantile), max.get()); // 桶的上界可能超过实际的最大值
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public long getCount() {
+        return count.sum();
+    }
+
+    @Override
+    public long getMeanNanos() {
+        long n = count.sum();
+        return n == 0 ? 0 : sum.sum() / n;
+    }
+
+    @Override
+    public long getMaxNanos() {
+        return max.get();
+    }
+
+    @Override
+    public long getP50Nanos() {
+        return percentile(0.5);
+    }
+
+    @Override
+    public long getP90Nanos() {
+        return percentile(0.9);
+    }
+
+    @Override
+    public long getP99Nanos() {
+        return percentile(0.99);
+    }
+
+    @Override
+    public long getP999Nanos() {
+        return percentile(0.999);
+    }
+}
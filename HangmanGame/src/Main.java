@@ -1,15 +1,44 @@
-//TIP 要<b>运行</b>代码，请按 <shortcut actionId="Run"/> 或
-// 点击装订区域中的 <icon src="AllIcons.Actions.Execute"/> 图标。
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+// 服务器模式入口：java Main [端口] [词典文件] [选词种子]
+// 指定选词种子时每个会话的选词顺序可以重现，用于压力测试
+// 事件日志和玩家统计写在词典文件所在的目录中，启动时先从日志恢复上次运行（包括崩溃）留下的会话
+// 图形界面版本请运行 HangmanGame
 public class Main {
-    public static void main(String[] args) {
-        //TIP 当文本光标位于高亮显示的文本处时按 <shortcut actionId="ShowIntentionActions"/>
-        // 查看 IntelliJ IDEA 建议如何修正。
-        System.out.printf("Hello and welcome!");
-
-        for (int i = 1; i <= 5; i++) {
-            //TIP 按 <shortcut actionId="Debug"/> 开始调试代码。我们已经设置了一个 <icon src="AllIcons.Debugger.Db_set_breakpoint"/> 断点
-            // 但您始终可以通过按 <shortcut actionId="ToggleLineBreakpoint"/> 添加更多断点。
-            System.out.println("i = " + i);
+    public static final String JOURNAL_FILE = "server-events.journal";
+    public static final String STATS_FILE = "server-players.stats";
+
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : HangmanServer.DEFAULT_PORT;
+        String wordList = args.length > 1 ? args[1] : "wordlist.txt";
+
+        Metrics.start(); // 用 -Dhangman.metrics.dump=<秒> 定期输出各项操作的耗时
+        Dictionary dictionary = Dictionary.load(Paths.get(wordList));
+        dictionary.watch(); // 修改词典文件后无需重启服务器
+        SessionStore sessions = args.length > 2
+                ? new SessionStore(HangmanServer.DEFAULT_SESSION_TTL_MINUTES, TimeUnit.MINUTES,
+                        HangmanServer.DEFAULT_SESSION_MEMORY, Long.parseLong(args[2]))
+                : new SessionStore(HangmanServer.DEFAULT_SESSION_TTL_MINUTES, TimeUnit.MINUTES,
+                        HangmanServer.DEFAULT_SESSION_MEMORY);
+
+        PlayerStats stats = PlayerStats.open(dictionary.getPath().resolveSibling(STATS_FILE));
+        Path journalPath = dictionary.getPath().resolveSibling(JOURNAL_FILE);
+        int restored = JournalReplay.restore(journalPath, dictionary.current(), sessions);
+        if (restored > 0) {
+            System.out.printf("从事件日志恢复了 %d 个会话%n", restored);
         }
+        GameJournal journal = GameJournal.open(journalPath);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                journal.close(); // 写出还没有提交的记录
+                stats.close();
+            } catch (IOException e) {
+                System.err.println("关闭事件日志或玩家统计失败: " + e);
+            }
+        }));
+        new HangmanServer(dictionary, sessions, journal, stats, port).run();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,166 @@
+// 游戏消息记录：只保留最近 capacity 行，保存在环形缓冲区中，超出时覆盖最早的一行
+// 每行是一个复用的 StringBuilder；消息由预先拆分好的模板拼接，追加消息时不需要 String.format，也不产生新的字符串
+// 只在 EDT 上使用
+public class MessageLog {
+    public static final int DEFAULT_CAPACITY = 200;
+
+    // 内容变化时调用，firstChangedLine 之前的行没有变化
+    public interface Listener {
+        void logChanged(int firstChangedLine);
+    }
+
+    // 预先拆分好的消息模板，"{}" 为参数的位置
+    public static final class Template {
+        private final String[] parts;
+
+        public Template(String pattern) {
+            this.parts = pattern.split("\\{}", -1);
+        }
+    }
+
+    private final StringBuilder[] lines;
+    private int head; // 最早一行在 lines 中的位置
+    private int count = 1; // 行数，最后一行是正在追加的行（可能为空）
+    private int firstChanged; // 本次追加影响的第一行
+    private Listener listener;
+
+    public MessageLog() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public MessageLog(int capacity) {
+        lines = new StringBuilder[Math.max(1, capacity)];
+        lines[0] = new StringBuilder(64);
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    public int getLineCount() {
+        return count;
+    }
+
+    // 第 i 行（0 为保留的最早一行）的长度
+    public int getLineLength(int i) {
+        return lines[(head + i) % lines.length].length();
+    }
+
+    // 把第 i 行复制到 dst 中，dst 的长度不能小于该行的长度
+    public void getChars(int i, char[] dst) {
+        StringBuilder line = lines[(head + i) % lines.length];
+        line.getChars(0, line.length(), dst, 0);
+    }
+
+    // 第 i 行的内容，会产生新的字符串，只用于调试和测试
+    public String getLine(int i) {
+        return lines[(head + i) % lines.length].toString();
+    }
+
+    public void clear() {
+        for (StringBuilder line : lines) {
+            if (line != null) {
+                line.setLength(0);
+            }
+        }
+        head = 0;
+        count = 1;
+        fire(0);
+    }
+
+    public void append(String text) {
+        begin();
+        appendText(text);
+        end();
+    }
+
+    public void append(Template template, char argument) {
+        begin();
+        appendText(template.parts[0]);
+        current().append(argument);
+        appendText(template.parts[1]);
+        end();
+    }
+
+    public void append(Template template, int argument) {
+        begin();
+        appendText(template.parts[0]);
+        current().append(argument);
+        appendText(template.parts[1]);
+        end();
+    }
+
+    public void append(Template template, int first, int second) {
+        begin();
+        appendText(template.parts[0]);
+        current().append(first);
+        appendText(template.parts[1]);
+        current().append(second);
+        appendText(template.parts[2]);
+        end();
+    }
+
+    public void append(Template template, char first, int second) {
+        begin();
+        appendText(template.parts[0]);
+        current().append(first);
+        appendText(template.parts[1]);
+        current().append(second);
+        appendText(template.parts[2]);
+        end();
+    }
+
+    public void append(Template template, String argument) {
+        begin();
+        appendText(template.parts[0]);
+        appendText(argument);
+        appendText(template.parts[1]);
+        end();
+    }
+
+    private void begin() {
+        firstChanged = count - 1;
+    }
+
+    private void end() {
+        fire(firstChanged);
+    }
+
+    private void fire(int firstChangedLine) {
+        if (listener != null) {
+            listener.logChanged(firstChangedLine);
+        }
+    }
+
+    private StringBuilder current() {
+        return lines[(head + count - 1) % lines.length];
+    }
+
+    // 追加文本，遇到换行符时开始新的一行
+    private void appendText(String text) {
+        StringBuilder line = current();
+        int start = 0;
+        int newLine;
+        while ((newLine = text.indexOf('\n', start)) >= 0) {
+            line.append(text, start, newLine);
+            line = newLine();
+            start = newLine + 1;
+        }
+        line.append(text, start, text.length());
+    }
+
+    private StringBuilder newLine() {
+        if (count == lines.length) {
+            head = (head + 1) % lines.length; // 覆盖最早的一行，所有行的位置都变了
+            firstChanged = 0;
+        } else {
+            count++;
+        }
+        int slot = (head + count - 1) % lines.length;
+        if (lines[slot] == null) {
+            lines[slot] = new StringBuilder(64);
+        }
+        lines[slot].setLength(0);
+        return lines[slot];
+    }
+}
@@ -0,0 +1,125 @@
+import javax.swing.*;
+import java.awt.*;
+
+// 显示 MessageLog 的组件，放在 JScrollPane 中使用
+// 所有行等高，绘制时根据裁剪区域算出可见的行，只绘制这些行；
+// 内容变化时先记下变化的范围，同一个 EDT 周期内的多条消息合并为一次布局、重绘和滚动，只重绘变化的行，并滚动到最后一行
+public class MessageLogView extends JComponent implements Scrollable {
+    private final MessageLog log;
+    private final Rectangle tail = new Rectangle(); // 最后一行的区域，用于滚动
+    private final Runnable flush = this::flush;
+    private final Runnable scrollToTail = this::scrollToTail;
+    private char[] chars = new char[128]; // 绘制时复用的字符缓冲区
+    private int laidOutLines; // 上次布局时的行数
+    private int dirtyFrom = -1; // 尚未重绘的第一行，-1 表示没有
+
+    public MessageLogView(MessageLog log) {
+        this.log = log;
+        setOpaque(true);
+        log.setListener(this::logChanged);
+    }
+
+    private int lineHeight() {
+        return getFontMetrics(getFont()).getHeight();
+    }
+
+    private void logChanged(int firstChangedLine) {
+        if (dirtyFrom < 0) {
+            dirtyFrom = firstChangedLine;
+            SwingUtilities.invokeLater(flush);
+        } else {
+            dirtyFrom = Math.min(dirtyFrom, firstChangedLine);
+        }
+    }
+
+    private void flush() {
+        int firstChangedLine = dirtyFrom;
+        dirtyFrom = -1;
+        int lineCount = log.getLineCount();
+        if (lineCount != laidOutLines) {
+            laidOutLines = lineCount;
+            revalidate(); // 行数变化时首选高度随之变化
+        }
+        Insets insets = getInsets();
+        int lineHeight = lineHeight();
+        int y = insets.top + firstChangedLine * lineHeight;
+        repaint(0, y, getWidth(), Math.max(getHeight(), insets.top + lineCount * lineHeight) - y);
+        SwingUtilities.invokeLater(scrollToTail); // 等布局完成（高度更新）后再滚动
+    }
+
+    private void scrollToTail() {
+        int lineHeight = lineHeight();
+        tail.setBounds(0, getInsets().top + (log.getLineCount() - 1) * lineHeight, 1, lineHeight);
+        scrollRectToVisible(tail);
+    }
+
+    @Override
+    public Dimension getPreferredSize() {
+        if (isPreferredSizeSet()) {
+            return super.getPreferredSize();
+        }
+        Insets insets = getInsets();
+        return new Dimension(insets.left + insets.right,
+                insets.top + insets.bottom + log.getLineCount() * lineHeight());
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        Rectangle clip = g.getClipBounds();
+        if (clip == null) {
+            clip = new Rectangle(0, 0, getWidth(), getHeight());
+        }
+        if (isOpaque()) {
+            g.setColor(getBackground());
+            g.fillRect(clip.x, clip.y, clip.width, clip.height);
+        }
+
+        // 只绘制与裁剪区域相交的行
+        Insets insets = getInsets();
+        FontMetrics metrics = getFontMetrics(getFont());
+        int lineHeight = metrics.getHeight();
+        int first = Math.max(0, (clip.y - insets.top) / lineHeight);
+        int last = Math.min(log.getLineCount() - 1, (clip.y + clip.height - insets.top) / lineHeight);
+        g.setColor(getForeground());
+        g.setFont(getFont());
+        for (int i = first; i <= last; i++) {
+            int length = log.getLineLength(i);
+            if (length == 0) {
+                continue;
+            }
+            if (chars.length < length) {
+                chars = new char[Math.max(length, chars.length * 2)];
+            }
+            log.getChars(i, chars);
+            g.drawChars(chars, 0, length, insets.left, insets.top + i * lineHeight + metrics.getAscent());
+        }
+    }
+
+    @Override
+    public Dimension getPreferredScrollableViewportSize() {
+        return getPreferredSize();
+    }
+
+    @Override
+    public int getScrollableUnitIncrement(Rectangle visibleRect, int orientation, int direction) {
+        return orientation == SwingConstants.VERTICAL ? lineHeight() : 16;
+    }
+
+    @Override
+    public int getScrollableBlockIncrement(Rectangle visibleRect, int orientation, int direction) {
+        return orientation == SwingConstants.VERTICAL ? visibleRect.height : visibleRect.width;
+    }
+
+    // 和原来的文本框一样不换行，过长的行被截断，不需要水平滚动
+    @Override
+    public boolean getScrollableTracksViewportWidth() {
+        return true;
+    }
+
+    // 内容不足一屏时填满视口，背景色一致
+    @Override
+    public boolean getScrollableTracksViewportHeight() {
+        Container parent = getParent();
+        return parent instanceof JViewport && parent.getHeight() > getPreferredSize().height;
+    }
+}
@@ -0,0 +1,183 @@
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+// 进程内的性能指标：热点操作的延迟直方图和计数器，图形界面和服务器使用同一组指标
+// 通过 JMX 发布（register()），在 jconsole 等工具中位于 HangmanGame 域下，例如 HangmanGame:type=Latency,name=checkLetter；
+// 也可以定期输出为文本（startDump()），每次输出累计的次数和这段时间内的分布，用于比较不同版本、发现性能回退
+// 启动时设置 -Dhangman.metrics.dump=<秒> 即按该间隔输出到标准输出，0 表示不输出
+public final class Metrics {
+    public static final String DUMP_PROPERTY = "hangman.metrics.dump";
+
+    public static final LatencyHistogram NEW_GAME = new LatencyHistogram("newGame"); // 选词和开局
+    public static final LatencyHistogram CHECK_LETTER = new LatencyHistogram("checkLetter");
+    public static final LatencyHistogram GIVE_HINT = new LatencyHistogram("giveHint");
+    public static final LatencyHistogram DICTIONARY_LOAD = new LatencyHistogram("dictionaryLoad");
+    public static final LatencyHistogram DICTIONARY_RELOAD = new LatencyHistogram("dictionaryReload");
+    public static final LatencyHistogram PANEL_PAINT = new LatencyHistogram("panelPaint");
+    public static final LatencyHistogram ROOM_GUESS = new LatencyHistogram("roomGuess"); // 包括通知房间的所有成员
+
+    public static final Counter GAMES_WON = new Counter("gamesWon");
+    public static final Counter GAMES_LOST = new Counter("gamesLost"); // 包括放弃的局
+    public static final Counter RELOAD_FAILURES = new Counter("dictionaryReloadFailures");
+    public static final Counter ROOM_EVENTS_DROPPED = new Counter("roomEventsDropped"); // 成员跟不上时跳过的房间事件
+    public static final Counter ROOM_SNAPSHOTS = new Counter("roomSnapshotsEncoded"); // 为观众编码的快照数，与观众人数无关
+    public static final Counter SNAPSHOTS_SKIPPED = new Counter("spectatorSnapshotsSkipped"); // 观众跟不上时跳过的版本
+
+    private static final LatencyHistogram[] HISTOGRAMS = {
+            NEW_GAME, CHECK_LETTER, GIVE_HINT, DICTIONARY_LOAD, DICTIONARY_RELOAD, PANEL_PAINT, ROOM_GUESS,
+    };
+    private static final Counter[] COUNTERS = {
+            GAMES_WON, GAMES_LOST, RELOAD_FAILURES, ROOM_EVENTS_DROPPED, ROOM_SNAPSHOTS, SNAPSHOTS_SKIPPED,
+    };
+    private static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private static boolean registered;
+    private static ScheduledExecutorService dumper;
+
+    // LatencyHistogram 的 JMX 属性，时间单位均为纳秒
+    public interface HistogramMXBean {
+        String getName();
+
+        long getCount();
+
+        long getMeanNanos();
+
+        long getMaxNanos();
+
+        long getP50Nanos();
+
+        long getP90Nanos();
+
+        long getP99Nanos();
+
+        long getP999Nanos();
+    }
+
+    public interface CounterMXBean {
+        String getName();
+
+        long getCount();
+    }
+
+    // 计数器，多个线程同时增加时不会互相争用
+    public static final class Counter implements CounterMXBean {
+        private final String name;
+        private final LongAdder count = new LongAdder();
+
+        private Counter(String name) {
+            this.name = name;
+        }
+
+        public void increment() {
+            count.increment();
+        }
+
+        public void add(long n) {
+            count.add(n);
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public long getCount() {
+            return count.sum();
+        }
+    }
+
+    private Metrics() {
+    }
+
+    // 注册 MBean，并按 DUMP_PROPERTY 启动定期输出；可以多次调用
+    public static void start() {
+        register();
+        long seconds = Long.getLong(DUMP_PROPERTY, 0);
+        if (seconds > 0) {
+            startDump(seconds, TimeUnit.SECONDS, System.out);
+        }
+    }
+
+    // 把所有指标注册到平台 MBeanServer，注册失败时只输出错误，不影响游戏
+    public static synchronized void register() {
+        if (registered) {
+            return;
+        }
+        registered = true;
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            for (LatencyHistogram histogram : HISTOGRAMS) {
+                server.registerMBean(histogram, new ObjectName("HangmanGame:type=Latency,name=" + histogram.getName()));
+            }
+            for (Counter counter : COUNTERS) {
+                server.registerMBean(counter, new ObjectName("HangmanGame:type=Counter,name=" + counter.getName()));
+            }
+        } catch (JMException e) {
+            System.err.println("无法注册性能指标的 MBean: " + e);
+        }
+    }
+
+    // 在后台线程中每隔 period 输出一次所有指标
+    public static synchronized void startDump(long period, TimeUnit unit, PrintStream out) {
+        if (dumper != null) {
+            return;
+        }
+        dumper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "metrics-dump");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Dump dump = new Dump();
+        dumper.scheduleAtFixedRate(() -> out.print(dump.next()), period, period, unit);
+    }
+
+    // 一次输出的文本；保存上次输出时各个直方图的桶计数，用于计算这段时间内的分布
+    static final class Dump {
+        private final long[][] previous = new long[HISTOGRAMS.length][LatencyHistogram.BUCKETS];
+        private final long[] current = new long[LatencyHistogram.BUCKETS];
+        private long previousNanos = System.nanoTime();
+
+        String next() {
+            long now = System.nanoTime();
+            StringBuilder text = new StringBuilder(1024);
+            text.append(String.format("[metrics %s, %.1f s]%n", LocalDateTime.now().format(TIME),
+                    (now - previousNanos) / 1e9));
+            previousNanos = now;
+            text.append(String.format("%-26s %10s %10s %10s %10s %10s %10s %10s%n",
+                    "latency (us)", "total", "interval", "mean", "p50", "p99", "p99.9", "max"));
+            for (int h = 0; h < HISTOGRAMS.length; h++) {
+                LatencyHistogram histogram = HISTOGRAMS[h];
+                histogram.snapshot(current);
+                long[] interval = previous[h];
+                long count = 0;
+                for (int i = 0; i < interval.length; i++) {
+                    long c = current[i];
+                    interval[i] = c - interval[i];
+                    count += interval[i];
+                }
+                // mean 和 max 为累计值，百分位数只看这段时间内的记录（取桶的上界，不超过最大值）
+                long max = histogram.getMaxNanos();
+                text.append(String.format("%-26s %10d %10d %10.1f %10.1f %10.1f %10.1f %10.1f%n",
+                        histogram.getName(), histogram.getCount(), count, histogram.getMeanNanos() / 1e3,
+                        Math.min(LatencyHistogram.percentile(interval, 0.5), max) / 1e3,
+                        Math.min(LatencyHistogram.percentile(interval, 0.99), max) / 1e3,
+                        Math.min(LatencyHistogram.percentile(interval, 0.999), max) / 1e3, max / 1e3));
+                System.arraycopy(current, 0, interval, 0, current.length);
+            }
+            for (Counter counter : COUNTERS) {
+                text.append(String.format("%-26s %10d%n", counter.getName(), counter.getCount()));
+            }
+            return text.toString();
+        }
+    }
+}
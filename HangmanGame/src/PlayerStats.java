@@ -0,0 +1,440 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+
+// 玩家统计：每个玩家在文件中占一条固定长度的记录，按难度分别记录局数、胜局、错误次数、提示次数、猜中用时和连胜
+// 玩家由名字标识（服务器的 NAME 命令，图形界面用系统用户名），同一个名字的战绩跨会话、跨连接累计；
+// 第一次见到的名字按顺序分配一个玩家编号，所以记录直接按编号排列：位置 = HEADER_SIZE + 编号 * RECORD_SIZE，
+// 文件大小只随玩家数增长；名字保存在记录中，打开文件时扫描一遍重建名字到编号的表
+// 多个进程可以共用一个统计文件（例如同一目录中的多个图形界面窗口）：创建文件头和注册新玩家时对文件头加文件锁，
+// 注册前先读入其他进程注册的名字，同一个名字不会分配两个编号；计数器在共享的映射上原子地更新
+// 文件按段映射到内存，每段 SEGMENT_RECORDS 条记录，用到时才映射新的段（文件是稀疏的），已经映射的段不会移动
+// 所有计数器都用 VarHandle 原子地更新（getAndAdd、compareAndSet），不加锁；数据在页缓存中，进程崩溃不会丢失
+//
+// 每个玩家还有一个分数（胜局数按难度加权：简单 1 分、中等 2 分、困难 3 分），分数只增不减；
+// 排行榜只保存前 LEADERBOARD_SIZE 名的不可变快照，分数增加时只和第 N 名比较一次，进入前 N 名才用 CAS 换一个新快照，
+// 查询排行榜直接返回快照，不需要对所有玩家排序；打开文件时扫描一遍所有记录重建排行榜
+//
+// 记录格式（小端序）：score(8)，之后每个难度 40 字节：
+//   games(4) wins(4) errors(4) hints(4) solveMillis(8) bestMillis(4) streak(4) bestStreak(4) 保留(4)
+// 最后是名字的字节数(4) 和名字（UTF-8，最多 MAX_NAME_BYTES 字节）；字节数最后写入，为 0 表示注册时没有写完
+// games 在开局时增加，其余在一局结束时更新；errors、hints 只统计结束了的局，solveMillis 为猜中的局的用时之和
+// 打开旧版本（按会话编号记录）的文件时，旧文件改名为 <文件名>.v<版本> 保留，重新开始统计
+public class PlayerStats implements Closeable {
+    static final int MAGIC = 0x54535048; // "HPST"
+    static final int VERSION = 2;
+    static final int HEADER_SIZE = 64; // MAGIC(4) VERSION(4) maxPlayer(8)，其余保留
+    static final int RECORD_SIZE = 192;
+    static final int SEGMENT_RECORDS = 1 << 16; // 每段 12MB
+    public static final int LEADERBOARD_SIZE = 100;
+    public static final int MAX_NAME_BYTES = 60;
+
+    private static final int MAX_PLAYER = 8;
+    private static final int SCORE = 0;
+    private static final int DIFFICULTY_BASE = 8;
+    private static final int DIFFICULTY_SIZE = 40;
+    private static final int GAMES = 0;
+    private static final int WINS = 4;
+    private static final int ERRORS = 8;
+    private static final int HINTS = 12;
+    private static final int SOLVE_MILLIS = 16;
+    private static final int BEST_MILLIS = 24;
+    private static final int STREAK = 28;
+    private static final int BEST_STREAK = 32;
+    private static final int NAME_LENGTH = 128;
+    private static final int NAME = 132;
+
+    private static final VarHandle INT = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle LONG = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    // 本进程中对文件头加文件锁的线程依次进行，同一个进程不能重复锁定文件的同一段
+    private static final ReentrantLock HEADER_LOCK = new ReentrantLock();
+
+    // 排行榜快照，按分数从高到低排列，分数相同时先进入排行榜的在前（重新打开文件后按玩家编号）；创建后不再修改
+    public static final class Leaderboard {
+        private static final Leaderboard EMPTY = new Leaderboard(new long[0], new long[0]);
+
+        private final long[] players;
+        private final long[] scores;
+
+        private Leaderboard(long[] players, long[] scores) {
+            this.players = players;
+            this.scores = scores;
+        }
+
+        public int size() {
+            return players.length;
+        }
+
+        // 第 rank 名（0 为第一名）的玩家编号，名字见 PlayerStats.name
+        public long player(int rank) {
+            return players[rank];
+        }
+
+        public long score(int rank) {
+            return scores[rank];
+        }
+
+        // player 的分数增加到 score 之后的排行榜，最多保留 capacity 名
+        // 并发的 offer 可能按相反的顺序到达，排行榜中已经有不低于 score 的分数时返回 this，分数不会被改小
+        private Leaderboard with(long player, long score, int capacity) {
+            int size = players.length;
+            int old = -1; // 玩家原来的名次
+            for (int i = 0; i < size; i++) {
+                if (players[i] == player) {
+                    old = i;
+                    break;
+                }
+            }
+            if (old >= 0 && scores[old] >= score) {
+                return this;
+            }
+            int rank = 0; // 新的名次：排在所有分数不低于它的玩家之后
+            while (rank < size && (scores[rank] >= score || rank == old)) {
+                rank++;
+            }
+            int newSize = Math.min(capacity, old >= 0 ? size : size + 1);
+            long[] newPlayers = new long[newSize];
+            long[] newScores = new long[newSize];
+            int j = 0;
+            for (int i = 0; i <= size && j < newSize; i++) {
+                if (i == rank) {
+                    newPlayers[j] = player;
+                    newScores[j++] = score;
+                }
+                if (i < size && i != old && j < newSize) {
+                    newPlayers[j] = players[i];
+                    newScores[j++] = scores[i];
+                }
+            }
+            return new Leaderboard(newPlayers, newScores);
+        }
+    }
+
+    private final Path path;
+    private final FileChannel channel;
+    private final MappedByteBuffer header;
+    private volatile MappedByteBuffer[] segments = new MappedByteBuffer[0];
+    private final AtomicReference<Leaderboard> leaderboard = new AtomicReference<>(Leaderboard.EMPTY);
+    private final ConcurrentHashMap<String, Long> players = new ConcurrentHashMap<>(); // 名字 -> 玩家编号
+    private long indexed = -1; // players 中已经包含的最大玩家编号，持有 HEADER_LOCK 时访问
+
+    private PlayerStats(Path path, FileChannel channel, MappedByteBuffer header) {
+        this.path = path;
+        this.channel = channel;
+        this.header = header;
+    }
+
+    // 打开统计文件，不存在时创建
+    public static PlayerStats open(Path path) throws IOException {
+        int version = Files.isRegularFile(path) && Files.size(path) > 0 ? version(path) : VERSION;
+        if (version >= 0 && version != VERSION) {
+            Path old = path.resolveSibling(path.getFileName() + ".v" + version);
+            Files.move(path, old, StandardCopyOption.REPLACE_EXISTING);
+            System.err.printf("玩家统计 %s 是旧的格式（版本 %d），已改名为 %s%n", path, version, old);
+        }
+        FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        HEADER_LOCK.lock();
+        try {
+            FileLock lock = channel.lock(0, HEADER_SIZE, false); // 另一个进程可能正在创建文件头或注册玩家
+            try {
+                boolean created = channel.size() == 0;
+                MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+                header.order(ByteOrder.LITTLE_ENDIAN);
+                if (created) {
+                    header.putInt(0, MAGIC).putInt(4, VERSION).putLong(MAX_PLAYER, -1);
+                } else if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+                    throw new IOException("不是玩家统计文件: " + path);
+                }
+                PlayerStats stats = new PlayerStats(path, channel, header);
+                stats.indexPlayers();
+                return stats;
+            } finally {
+                lock.release();
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        } finally {
+            HEADER_LOCK.unlock();
+        }
+    }
+
+    // 统计文件的格式版本，不是玩家统计文件时返回 -1
+    private static int version(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+            channel.read(header, 0);
+            return header.hasRemaining() || header.getInt(0) != MAGIC ? -1 : header.getInt(4);
+        }
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    // 已分配的最大玩家编号，没有玩家时为 -1
+    public long getMaxPlayer() {
+        return (long) LONG.getVolatile(header, MAX_PLAYER);
+    }
+
+    // 名字能否作为玩家名：1 到 MAX_NAME_BYTES 个字节（UTF-8），不含空白和控制字符
+    public static boolean isValidName(String name) {
+        if (name == null || name.isEmpty() || name.getBytes(StandardCharsets.UTF_8).length > MAX_NAME_BYTES) {
+            return false;
+        }
+        return name.codePoints().noneMatch(c -> Character.isWhitespace(c) || Character.isISOControl(c));
+    }
+
+    // 名字对应的玩家编号，第一次见到的名字注册为新玩家；名字无效时抛出 IllegalArgumentException
+    public long player(String name) {
+        if (!isValidName(name)) {
+            throw new IllegalArgumentException("无效的玩家名: " + name);
+        }
+        Long player = players.get(name);
+        return player != null ? player : register(name);
+    }
+
+    // 分配下一个玩家编号并把名字写入它的记录，字节数最后写入；其他线程或进程已经注册了这个名字时返回它的编号
+    private long register(String name) {
+        HEADER_LOCK.lock();
+        try {
+            FileLock lock = channel.lock(0, HEADER_SIZE, false);
+            try {
+                indexPlayers();
+                Long registered = players.get(name);
+                if (registered != null) {
+                    return registered;
+                }
+                long player = (long) LONG.getAndAdd(header, MAX_PLAYER, 1L) + 1;
+                ByteBuffer segment = segment(player);
+                int offset = offset(player);
+                byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+                segment.put(offset + NAME, bytes);
+                INT.setVolatile(segment, offset + NAME_LENGTH, bytes.length);
+                players.put(name, player);
+                indexed = player;
+                return player;
+            } finally {
+                lock.release();
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("无法锁定玩家统计文件: " + path, e);
+        } finally {
+            HEADER_LOCK.unlock();
+        }
+    }
+
+    // 玩家的名字，编号不存在时返回 null
+    public String name(long player) {
+        if (player < 0 || player > getMaxPlayer()) {
+            return null;
+        }
+        ByteBuffer segment = segment(player);
+        int offset = offset(player);
+        int length = (int) INT.getVolatile(segment, offset + NAME_LENGTH);
+        if (length <= 0 || length > MAX_NAME_BYTES) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        segment.get(offset + NAME, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // 开始新的一局
+    public void gameStarted(long player, Difficulty difficulty) {
+        ByteBuffer segment = segment(player);
+        int base = offset(player) + DIFFICULTY_BASE + difficulty.ordinal() * DIFFICULTY_SIZE;
+        INT.getAndAdd(segment, base + GAMES, 1);
+    }
+
+    // 一局结束（猜中、失败或放弃），millis 为这一局的用时
+    public void gameFinished(long player, Difficulty difficulty, boolean won, int errors, int hints, long millis) {
+        ByteBuffer segment = segment(player);
+        int offset = offset(player);
+        int base = offset + DIFFICULTY_BASE + difficulty.ordinal() * DIFFICULTY_SIZE;
+        INT.getAndAdd(segment, base + ERRORS, errors);
+        INT.getAndAdd(segment, base + HINTS, hints);
+        if (!won) {
+            INT.setVolatile(segment, base + STREAK, 0);
+            return;
+        }
+        INT.getAndAdd(segment, base + WINS, 1);
+        LONG.getAndAdd(segment, base + SOLVE_MILLIS, millis);
+        int solve = (int) Math.min(Integer.MAX_VALUE, Math.max(1, millis)); // 0 表示还没有猜中过
+        int best;
+        while (((best = (int) INT.getVolatile(segment, base + BEST_MILLIS)) == 0 || solve < best)
+                && !INT.compareAndSet(segment, base + BEST_MILLIS, best, solve)) {
+            // 其他线程同时更新了最短用时，重新比较
+        }
+        int streak = (int) INT.getAndAdd(segment, base + STREAK, 1) + 1;
+        int bestStreak;
+        while (streak > (bestStreak = (int) INT.getVolatile(segment, base + BEST_STREAK))
+                && !INT.compareAndSet(segment, base + BEST_STREAK, bestStreak, streak)) {
+            // 重新比较
+        }
+        long score = (long) LONG.getAndAdd(segment, offset + SCORE, (long) points(difficulty)) + points(difficulty);
+        offer(player, score);
+    }
+
+    private static int points(Difficulty difficulty) {
+        return difficulty.ordinal() + 1;
+    }
+
+    // 分数增加后更新排行榜：没有超过第 N 名时只比较一次
+    private void offer(long player, long score) {
+        while (true) {
+            Leaderboard board = leaderboard.get();
+            int size = board.size();
+            if (size == LEADERBOARD_SIZE && score <= board.scores[size - 1]) {
+                return;
+            }
+            Leaderboard updated = board.with(player, score, LEADERBOARD_SIZE);
+            if (updated == board || leaderboard.compareAndSet(board, updated)) {
+                return;
+            }
+        }
+    }
+
+    // 当前排行榜的快照
+    public Leaderboard getLeaderboard() {
+        return leaderboard.get();
+    }
+
+    public long getScore(long player) {
+        return player > getMaxPlayer() ? 0 : (long) LONG.getVolatile(segment(player), offset(player) + SCORE);
+    }
+
+    public int getGames(long player, Difficulty difficulty) {
+        return readInt(player, difficulty, GAMES);
+    }
+
+    public int getWins(long player, Difficulty difficulty) {
+        return readInt(player, difficulty, WINS);
+    }
+
+    public int getErrors(long player, Difficulty difficulty) {
+        return readInt(player, difficulty, ERRORS);
+    }
+
+    public int getHints(long player, Difficulty difficulty) {
+        return readInt(player, difficulty, HINTS);
+    }
+
+    // 猜中的局的平均用时（毫秒），没有猜中过时为 0
+    public long getAverageSolveMillis(long player, Difficulty difficulty) {
+        int wins = getWins(player, difficulty);
+        if (wins == 0) {
+            return 0;
+        }
+        int base = offset(player) + DIFFICULTY_BASE + difficulty.ordinal() * DIFFICULTY_SIZE;
+        return (long) LONG.getVolatile(segment(player), base + SOLVE_MILLIS) / wins;
+    }
+
+    // 最短的猜中用时（毫秒），没有猜中过时为 0
+    public int getBestSolveMillis(long player, Difficulty difficulty) {
+        return readInt(player, difficulty, BEST_MILLIS);
+    }
+
+    public int getStreak(long player, Difficulty difficulty) {
+        return readInt(player, difficulty, STREAK);
+    }
+
+    public int getBestStreak(long player, Difficulty difficulty) {
+        return readInt(player, difficulty, BEST_STREAK);
+    }
+
+    private int readInt(long player, Difficulty difficulty, int field) {
+        if (player > getMaxPlayer()) {
+            return 0; // 还没有记录，不为查询映射新的段
+        }
+        int base = offset(player) + DIFFICULTY_BASE + difficulty.ordinal() * DIFFICULTY_SIZE;
+        return (int) INT.getVolatile(segment(player), base + field);
+    }
+
+    private static int offset(long player) {
+        return (int) (player % SEGMENT_RECORDS) * RECORD_SIZE;
+    }
+
+    // 玩家记录所在的段，需要时映射新的段
+    private ByteBuffer segment(long player) {
+        if (player < 0) {
+            throw new IllegalArgumentException("玩家编号不能为负数: " + player);
+        }
+        int index = (int) (player / SEGMENT_RECORDS);
+        MappedByteBuffer[] segments = this.segments;
+        if (index < segments.length && segments[index] != null) {
+            return segments[index];
+        }
+        return map(index);
+    }
+
+    private synchronized MappedByteBuffer map(int index) {
+        MappedByteBuffer[] segments = this.segments;
+        if (index >= segments.length) {
+            segments = Arrays.copyOf(segments, Math.max(index + 1, segments.length * 2));
+        } else if (segments[index] != null) {
+            return segments[index];
+        }
+        try {
+            long position = HEADER_SIZE + (long) index * SEGMENT_RECORDS * RECORD_SIZE;
+            MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_WRITE, position,
+                    (long) SEGMENT_RECORDS * RECORD_SIZE);
+            segment.order(ByteOrder.LITTLE_ENDIAN);
+            segments[index] = segment;
+            this.segments = segments; // volatile 写入，其他线程看到完整映射的段
+            return segment;
+        } catch (IOException e) {
+            throw new IllegalStateException("无法映射玩家统计文件: " + path, e);
+        }
+    }
+
+    // 扫描 indexed 之后的记录，加入名字到编号的表和排行榜：打开文件时扫描所有记录，注册时扫描其他进程新注册的玩家
+    // 持有文件头的锁时调用，所以扫描到的记录都已经写完；没有写完名字的记录（注册时崩溃）被跳过
+    private void indexPlayers() {
+        long max = getMaxPlayer();
+        for (long player = indexed + 1; player <= max; player++) {
+            String name = name(player);
+            if (name == null) {
+                continue;
+            }
+            players.put(name, player);
+            long score = (long) LONG.getVolatile(segment(player), offset(player) + SCORE);
+            if (score > 0) {
+                offer(player, score);
+            }
+        }
+        indexed = max;
+    }
+
+    // 把修改过的页写回文件
+    public void force() {
+        header.force();
+        for (MappedByteBuffer segment : segments) {
+            if (segment != null) {
+                segment.force();
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        force();
+        channel.close();
+    }
+}
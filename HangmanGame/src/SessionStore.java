@@ -0,0 +1,280 @@
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+// 游戏会话表：保存服务器上所有进行中的游戏，查找时不加全局锁
+// 空闲超过 ttl 的会话由后台线程清理；会话数达到内存上限时，淘汰空闲最久的会话（取样近似，见 evictIdlest）
+public class SessionStore implements AutoCloseable {
+    // 每个会话大约占用的内存（会话对象、会话锁、HangmanEngine、WordScheduler 和哈希表中的条目），用于把内存上限换算为会话数
+    public static final int SESSION_BYTES = 336;
+    private static final int EVICTION_SAMPLES = 256; // 选择候选会话时取样的会话数
+    private static final int EVICTION_BATCH = 64; // 每次选出大约 1/EVICTION_BATCH 的会话作为淘汰候选
+
+    // 一个玩家的游戏会话；修改 engine 之前需要持有会话锁（getLock），不同会话之间互不影响
+    // 会话锁使用 ReentrantLock 而不是 synchronized，虚拟线程等待时不会占住载体线程
+    public static final class Session {
+        private final long id;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final HangmanEngine engine;
+        private final WordScheduler scheduler; // 这个玩家的选词器，同一个会话中不会很快遇到重复的单词
+        private volatile long lastAccess; // System.nanoTime()
+        private long gameStart; // 当前一局开始的时间（System.nanoTime()），用于统计猜中用时，修改时需要对会话加锁
+        private long player = -1; // 当前一局计入统计的玩家编号（见 PlayerStats），-1 表示匿名，修改时需要对会话加锁
+
+        private Session(long id, HangmanEngine engine, long lastAccess, WordScheduler scheduler) {
+            this.id = id;
+            this.engine = engine;
+            this.lastAccess = lastAccess;
+            this.scheduler = scheduler;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public ReentrantLock getLock() {
+            return lock;
+        }
+
+        public HangmanEngine getEngine() {
+            return engine;
+        }
+
+        public WordScheduler getScheduler() {
+            return scheduler;
+        }
+
+        public long getGameStart() {
+            return gameStart;
+        }
+
+        public void setGameStart(long gameStart) {
+            this.gameStart = gameStart;
+        }
+
+        public long getPlayer() {
+            return player;
+        }
+
+        public void setPlayer(long player) {
+            this.player = player;
+        }
+    }
+
+    private final ConcurrentHashMap<Long, Session> sessions = new ConcurrentHashMap<>();
+    private final long ttlNanos;
+    private final int capacity;
+    private final AtomicLong nextId = new AtomicLong(1);
+    private final AtomicInteger live = new AtomicInteger();
+    private final LongAdder expired = new LongAdder(); // 因空闲超时被清理的会话数
+    private final LongAdder evicted = new LongAdder(); // 因内存上限被淘汰的会话数
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder lookupNanos = new LongAdder();
+    private final AtomicLong maxLookupNanos = new AtomicLong();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private final ArrayDeque<Session> idleCandidates = new ArrayDeque<>(); // 待淘汰的候选会话，由 evictionLock 保护
+    private long idleThreshold; // 候选会话的最近访问时间上限，由 evictionLock 保护
+    private final ScheduledExecutorService sweeper;
+    private final boolean seeded;
+    private final long seed;
+
+    public SessionStore(long ttl, TimeUnit unit, long maxBytes) {
+        this(ttl, unit, maxBytes, false, 0);
+    }
+
+    // 指定种子时每个会话的选词顺序只由种子和会话编号决定，用于可重现的压力测试
+    public SessionStore(long ttl, TimeUnit unit, long maxBytes, long seed) {
+        this(ttl, unit, maxBytes, true, seed);
+    }
+
+    private SessionStore(long ttl, TimeUnit unit, long maxBytes, boolean seeded, long seed) {
+        this.seeded = seeded;
+        this.seed = seed;
+        this.ttlNanos = unit.toNanos(ttl);
+        this.capacity = (int) Math.max(1, Math.min(Integer.MAX_VALUE, maxBytes / SESSION_BYTES));
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "session-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(TimeUnit.SECONDS.toNanos(1), ttlNanos / 4);
+        sweeper.scheduleWithFixedDelay(this::expireIdle, period, period, TimeUnit.NANOSECONDS);
+    }
+
+    // 创建新会话，必要时先淘汰空闲最久的会话
+    public Session create() {
+        reserveSlot();
+        return add(nextId.getAndIncrement(), new HangmanEngine(), System.nanoTime());
+    }
+
+    // 按原来的编号恢复会话（服务器启动时从事件日志恢复，见 JournalReplay），engine 为重放出的游戏，
+    // lastActive 为会话最后一次活动的时间（System.currentTimeMillis()），恢复的会话从那时开始计算空闲时间
+    // 已经空闲超过 ttl 的会话不再恢复，返回 null；会话已存在时直接返回已有的会话
+    // 不论是否恢复，之后新建的会话编号都比它大
+    public Session restore(long id, HangmanEngine engine, long lastActive) {
+        nextId.accumulateAndGet(id + 1, Math::max);
+        long idleNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, System.currentTimeMillis() - lastActive));
+        if (idleNanos >= ttlNanos) {
+            return null;
+        }
+        Session session = sessions.get(id);
+        if (session != null) {
+            return session;
+        }
+        reserveSlot();
+        return add(id, engine, System.nanoTime() - idleNanos);
+    }
+
+    // 之后新建的会话编号不小于 next，例如玩家统计中已经有编号小于 next 的玩家
+    public void reserveIds(long next) {
+        nextId.accumulateAndGet(next, Math::max);
+    }
+
+    private void reserveSlot() {
+        while (true) {
+            int current = live.get();
+            if (current < capacity) {
+                if (live.compareAndSet(current, current + 1)) {
+                    return;
+                }
+            } else if (!evictIdlest()) {
+                live.incrementAndGet(); // 没有可以淘汰的会话（都在其他线程创建中），暂时超出上限
+                return;
+            }
+        }
+    }
+
+    private Session add(long id, HangmanEngine engine, long lastAccess) {
+        WordScheduler scheduler = seeded
+                ? new WordScheduler(WordScheduler.Mode.SHUFFLE, seed + id * 0x9E3779B97F4A7C15L)
+                : new WordScheduler(WordScheduler.Mode.SHUFFLE);
+        Session session = new Session(id, engine, lastAccess, scheduler);
+        sessions.put(session.id, session);
+        return session;
+    }
+
+    // 查找会话并刷新它的最近访问时间，会话不存在或已过期时返回 null
+    public Session get(long id) {
+        long start = System.nanoTime();
+        Session session = sessions.get(id);
+        if (session != null) {
+            session.lastAccess = start;
+        }
+        long elapsed = System.nanoTime() - start;
+        lookups.increment();
+        lookupNanos.add(elapsed);
+        if (elapsed > maxLookupNanos.get()) {
+            maxLookupNanos.accumulateAndGet(elapsed, Math::max);
+        }
+        return session;
+    }
+
+    public void remove(long id) {
+        if (sessions.remove(id) != null) {
+            live.decrementAndGet();
+        }
+    }
+
+    // 淘汰一个空闲最久的会话（近似），表为空（会话都在其他线程创建中）时返回 false
+    // 候选会话成批选出（见 selectIdle），之后的淘汰直接从候选队列中取，每次淘汰的平均开销是常数；
+    // 只有已经放入表中的会话才会被选中，正在创建的会话不会被淘汰；取出时已经被访问过的会话不再空闲，跳过它
+    private boolean evictIdlest() {
+        evictionLock.lock();
+        try {
+            while (true) {
+                Session session = idleCandidates.poll();
+                if (session == null) {
+                    if (!selectIdle()) {
+                        return false;
+                    }
+                } else if (session.lastAccess - idleThreshold <= 0 && sessions.remove(session.id, session)) {
+                    live.decrementAndGet();
+                    evicted.increment();
+                    return true;
+                }
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    // 选出大约 1/EVICTION_BATCH 最空闲的会话放入候选队列：先遍历一遍会话表，随机取样 EVICTION_SAMPLES 个会话的
+    // 最近访问时间，估计出这些会话的访问时间上限，再遍历一遍取出不晚于这个上限的会话；调用时需要持有 evictionLock
+    private boolean selectIdle() {
+        long[] samples = new long[EVICTION_SAMPLES];
+        int seen = 0;
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (Session session : sessions.values()) {
+            int slot = seen < samples.length ? seen : random.nextInt(seen + 1); // 蓄水池抽样
+            if (slot < samples.length) {
+                samples[slot] = session.lastAccess;
+            }
+            seen++;
+        }
+        if (seen == 0) {
+            return false;
+        }
+        int sampled = Math.min(seen, samples.length);
+        Arrays.sort(samples, 0, sampled);
+        idleThreshold = samples[Math.max(1, sampled / EVICTION_BATCH) - 1];
+        for (Session session : sessions.values()) {
+            if (session.lastAccess - idleThreshold <= 0) {
+                idleCandidates.add(session);
+            }
+        }
+        return true;
+    }
+
+    // 清理空闲超过 ttl 的会话，遍历时不会阻塞查找
+    private void expireIdle() {
+        long deadline = System.nanoTime() - ttlNanos;
+        for (Session session : sessions.values()) {
+            if (session.lastAccess - deadline < 0 && sessions.remove(session.id, session)) {
+                live.decrementAndGet();
+                expired.increment();
+            }
+        }
+    }
+
+    public int getLiveSessions() {
+        return live.get();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getExpired() {
+        return expired.sum();
+    }
+
+    public long getEvicted() {
+        return evicted.sum();
+    }
+
+    public long getLookups() {
+        return lookups.sum();
+    }
+
+    public long getAverageLookupNanos() {
+        long count = lookups.sum();
+        return count == 0 ? 0 : lookupNanos.sum() / count;
+    }
+
+    public long getMaxLookupNanos() {
+        return maxLookupNanos.get();
+    }
+
+    @Override
+    public void close() {
+        sweeper.shutdownNow();
+    }
+}
@@ -0,0 +1,675 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.zip.CRC32;
+
+// 单词索引：加载时按单词长度分桶，只构建一次
+// 所有单词按长度排好序存放，任意长度区间 [minLength, maxLength] 都对应一段连续的下标，
+// 因此每一轮选词都是 O(1)，也不需要再创建新的列表
+// 单词的字母紧凑地存放在一块堆外内存中，配合偏移表访问，只有真正需要时才转换成 String
+// 每个单词还带有字母位置掩码：单词中出现的每个字母对应一个 long，第 i 位表示该字母出现在第 i 个位置
+//
+// 字母表由词典决定（见 Alphabet）：文本第一行可以用 "#alphabet: АБВ..." 声明字母表，否则按词典中出现的字母选出；
+// 文本按 UTF-8 解码，索引中每个字母只存它在字母表中的编码（一个字节），字母集合是一个 long，与文字无关
+//
+// 每个单词还有一个难度分数（见 HardnessScorer），所有单词按分数排好序的编号也保存在索引中，
+// 因此按难度区间选词同样是 O(1)；分数需要整个词典，分阶段构建时在 finish() 中计算
+//
+// 整个索引保存在一块连续的内存（词典映像）中，格式与 DictionaryCompiler 生成的二进制词典文件相同，
+// 因此二进制词典只需映射到内存、校验后即可使用，不需要再解析
+public class WordIndex {
+    public static final int MAX_WORD_LENGTH = 64; // 位置掩码使用 long，单词最长 64 个字母
+
+    // 词典映像格式（小端序）：文件头之后依次是字母表（固定 MAX_LETTERS 个 char）、lengthStart、wordStart、maskStart、
+    // hardness、byHardness、letterSets、positionMasks 和 letters
+    static final int MAGIC = 0x584D5748; // "HWMX"
+    static final int VERSION = 5;
+    private static final String ALPHABET_HEADER = "#alphabet:"; // 文本第一行声明字母表的前缀
+    private static final int SOURCE_SIZE = 8; // 源文本文件的大小，用于判断二进制词典是否过期
+    private static final int SOURCE_MODIFIED = 16; // 源文本文件的修改时间
+    private static final int CHECKSUM = 24; // 除这个字段本身以外整个映像（包括文件头）的 CRC32
+    private static final int WORD_COUNT = 32;
+    private static final int MAX_LENGTH = 36;
+    private static final int TOTAL_LETTERS = 40;
+    private static final int TOTAL_MASKS = 44;
+    private static final int ALPHABET_SIZE = 48;
+    private static final int HEADER_SIZE = 56;
+    private static final int ALPHABET_BYTES = Alphabet.MAX_LETTERS * 2;
+    private static final long ALL_LENGTHS = -1L; // 所有长度（1 到 64）的桶都已就绪
+
+    private final ByteBuffer image; // 完整的词典映像
+    private final Alphabet alphabet;
+    private final int[] lengthStart; // lengthStart[n] 为长度为 n 的第一个单词的下标，lengthStart[maxLength + 1] 为单词总数
+    private final IntBuffer wordStart; // 单词 id 的字母在 letters 中的起始位置，wordStart[size] 为字母总数
+    private final LongBuffer letterSets; // 每个单词包含的字母集合，第 i 位对应编码为 i 的字母
+    private final IntBuffer maskStart; // 单词 id 的位置掩码在 positionMasks 中的起始下标，每个单词预留 min(长度, 字母数) 个
+    private final LongBuffer positionMasks; // 单词中出现过的字母的掩码，按字母编码顺序排列
+    private final ByteBuffer letters; // 所有单词的字母编码，按长度升序连续存放，下标即单词编号
+    private final FloatBuffer hardness; // 每个单词的难度分数，越大越难
+    private final IntBuffer byHardness; // 按难度分数从低到高排列的单词编号
+    private volatile long readyLengths; // 已经就绪的长度，第 n - 1 位对应长度为 n 的桶
+    private volatile boolean ranked; // 难度分数是否已经算好
+    private final AtomicReferenceArray<LengthBucket> buckets = new AtomicReferenceArray<>(MAX_WORD_LENGTH + 1); // 见 bucket()
+
+    // 同一长度所有单词的字母编码和字母集合的堆内副本，邪恶模式（见 EvilAdversary）每次猜测都要扫描整个长度时使用
+    // 创建之后只读，所有会话共享
+    static final class LengthBucket {
+        final int firstId;
+        final int count;
+        final int length;
+        final byte[] letters; // 第 i 个单词的字母在 letters[i * length] 开始
+        final long[] letterSets;
+
+        private LengthBucket(WordIndex index, int length) {
+            this.firstId = index.firstId(length);
+            this.count = index.count(length, length);
+            this.length = length;
+            this.letters = new byte[count * length];
+            this.letterSets = new long[count];
+            index.getLetters(firstId, count, letters);
+            index.getLetterSets(firstId, count, letterSets);
+        }
+    }
+
+    // 加载词典：优先使用同目录下编译好的二进制词典，文件不存在、已过期或校验失败时改为解析文本文件
+    public static WordIndex load(Path path) throws IOException {
+        WordIndex compiled = loadCompiled(path);
+        return compiled != null ? compiled : loadText(path);
+    }
+
+    // 把词典文本文件映射到内存中直接扫描，不会为每个单词创建 String
+    public static WordIndex loadText(Path path) throws IOException {
+        return builder(path).finish();
+    }
+
+    // 映射 path 对应的二进制词典，不可用时返回 null
+    public static WordIndex loadCompiled(Path path) throws IOException {
+        Path compiledPath = compiledPath(path);
+        if (!Files.isRegularFile(compiledPath)) {
+            return null;
+        }
+        ByteBuffer image;
+        try (FileChannel channel = FileChannel.open(compiledPath, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE || channel.size() > Integer.MAX_VALUE) {
+                return null;
+            }
+            image = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        if (image.getInt(0) != MAGIC || image.getInt(4) != VERSION) {
+            return null;
+        }
+        if (Files.isRegularFile(path) && (image.getLong(SOURCE_SIZE) != Files.size(path)
+                || image.getLong(SOURCE_MODIFIED) != Files.getLastModifiedTime(path).toMillis())) {
+            return null; // 文本文件在编译之后被修改过
+        }
+        if (image.getLong(CHECKSUM) != checksum(image) || !validLayout(image)) {
+            return null;
+        }
+        return new WordIndex(image, ALL_LENGTHS, readAlphabet(image));
+    }
+
+    // 文件头中的各项数量是否合理并且与文件大小一致，否则各段的偏移可能超出映像
+    private static boolean validLayout(ByteBuffer image) {
+        int count = image.getInt(WORD_COUNT);
+        int maxLength = image.getInt(MAX_LENGTH);
+        int totalLetters = image.getInt(TOTAL_LETTERS);
+        int totalMasks = image.getInt(TOTAL_MASKS);
+        int alphabetSize = image.getInt(ALPHABET_SIZE);
+        if (count < 0 || maxLength < 0 || maxLength > MAX_WORD_LENGTH || totalLetters < 0 || totalMasks < 0
+                || alphabetSize < 0 || alphabetSize > Alphabet.MAX_LETTERS) {
+            return false;
+        }
+        return imageSize(count, maxLength, totalLetters, totalMasks) == image.capacity()
+                && image.getInt(HEADER_SIZE + ALPHABET_BYTES + (maxLength + 1) * 4) == count; // lengthStart[maxLength + 1]
+    }
+
+    // 词典映像的大小，各段的布局见构造函数
+    private static long imageSize(int count, int maxLength, long totalLetters, long totalMasks) {
+        long setsOffset = align8(HEADER_SIZE + ALPHABET_BYTES + (maxLength + 2 + 4L * count + 2) * 4);
+        return setsOffset + 8L * (count + totalMasks) + totalLetters;
+    }
+
+    private static Alphabet readAlphabet(ByteBuffer image) {
+        char[] letters = new char[image.getInt(ALPHABET_SIZE)];
+        section(image, HEADER_SIZE, letters.length * 2).asCharBuffer().get(letters);
+        return Alphabet.of(new String(letters));
+    }
+
+    // 文本词典对应的二进制词典路径，例如 wordlist.txt 对应 wordlist.bin
+    public static Path compiledPath(Path path) {
+        String name = path.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return path.resolveSibling((dot > 0 ? name.substring(0, dot) : name) + ".bin");
+    }
+
+    // 由内存中的单词构建索引，主要用于测试和模拟
+    public static WordIndex of(String... words) {
+        byte[] text = String.join("\n", words).getBytes(StandardCharsets.UTF_8);
+        return new Builder(ByteBuffer.wrap(text), text.length, 0L).finish();
+    }
+
+    private WordIndex(ByteBuffer image, long readyLengths, Alphabet alphabet) {
+        this.image = image;
+        this.alphabet = alphabet;
+        this.readyLengths = readyLengths;
+        this.ranked = readyLengths == ALL_LENGTHS; // 二进制词典中已经有难度分数
+        int count = image.getInt(WORD_COUNT);
+        int maxLength = image.getInt(MAX_LENGTH);
+        int totalLetters = image.getInt(TOTAL_LETTERS);
+        int totalMasks = image.getInt(TOTAL_MASKS);
+
+        int offset = HEADER_SIZE + ALPHABET_BYTES;
+        lengthStart = new int[maxLength + 2];
+        section(image, offset, lengthStart.length * 4).asIntBuffer().get(lengthStart);
+        offset += lengthStart.length * 4;
+        wordStart = section(image, offset, (count + 1) * 4).asIntBuffer();
+        offset += (count + 1) * 4;
+        maskStart = section(image, offset, (count + 1) * 4).asIntBuffer();
+        offset += (count + 1) * 4;
+        hardness = section(image, offset, count * 4).asFloatBuffer();
+        offset += count * 4;
+        byHardness = section(image, offset, count * 4).asIntBuffer();
+        offset = (int) align8(offset + count * 4);
+        letterSets = section(image, offset, count * 8).asLongBuffer();
+        offset += count * 8;
+        positionMasks = section(image, offset, totalMasks * 8).asLongBuffer();
+        offset += totalMasks * 8;
+        letters = section(image, offset, totalLetters);
+    }
+
+    private static ByteBuffer section(ByteBuffer image, int offset, int length) {
+        ByteBuffer section = image.duplicate();
+        section.position(offset).limit(offset + length);
+        return section.slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static long align8(long offset) {
+        return (offset + 7) & ~7L;
+    }
+
+    // 文件头也要校验，否则损坏的数量或偏移会让 section() 越界，而不是退回到文本词典
+    private static long checksum(ByteBuffer image) {
+        CRC32 crc = new CRC32();
+        ByteBuffer data = image.duplicate();
+        data.position(0).limit(CHECKSUM);
+        crc.update(data);
+        data.limit(image.capacity()).position(CHECKSUM + 8);
+        crc.update(data);
+        return crc.getValue();
+    }
+
+    // 把词典映像写入 out，DictionaryCompiler 用它生成二进制词典
+    void writeTo(FileChannel out) throws IOException {
+        ByteBuffer data = image.duplicate();
+        data.position(0);
+        while (data.hasRemaining()) {
+            out.write(data);
+        }
+    }
+
+    // 分阶段构建文本词典：先统计各长度的单词数量并分配好整个映像，再按任意顺序填充各个长度的桶
+    // 每填充完一段长度，这些桶就立即可以用来选词，不必等整个词典加载完
+    // 构建只能在一个线程中进行，其他线程可以同时通过 index() 读取已经就绪的桶
+    public static final class Builder {
+        private final ByteBuffer text;
+        private final Alphabet alphabet;
+        private final WordIndex index;
+        private final int[] lengthCounts = new int[MAX_WORD_LENGTH + 1];
+        private final int[] next; // 每个长度的桶中下一个待填充的单词编号
+        private final byte[] codes = new byte[MAX_WORD_LENGTH]; // add() 中当前单词的字母编码
+        private int filledWords;
+
+        // text 为按行分隔的单词列表（UTF-8）
+        Builder(ByteBuffer text, long sourceSize, long sourceModified) {
+            this.text = text;
+
+            // 统计每个长度的可用单词数量，空行、过长的单词和含有字母表以外字符的单词会被跳过
+            // 没有声明字母表时，统计的同时记下每个字母出现的次数，由此选出字母表；
+            // 只有出现的字母多于 Alphabet.MAX_LETTERS 个、部分单词不能使用时才需要按选出的字母表重新统计
+            Alphabet alphabet = declaredAlphabet(text);
+            if (alphabet == null) {
+                int[] letterCounts = new int[Character.MAX_VALUE + 1];
+                countLengths(null, letterCounts);
+                alphabet = Alphabet.detect(letterCounts);
+                for (int c = 0; c < letterCounts.length; c++) {
+                    if (letterCounts[c] > 0 && alphabet.indexOf((char) c) < 0) {
+                        Arrays.fill(lengthCounts, 0);
+                        countLengths(alphabet, null);
+                        break;
+                    }
+                }
+            } else {
+                countLengths(alphabet, null);
+            }
+            this.alphabet = alphabet;
+
+            int maxLength = 0;
+            for (int length = 1; length <= MAX_WORD_LENGTH; length++) {
+                if (lengthCounts[length] > 0) {
+                    maxLength = length;
+                }
+            }
+
+            // 计数排序：把每个长度的数量换算成每个桶的起始位置
+            int[] lengthStart = new int[maxLength + 2];
+            long totalLetters = 0;
+            long totalMasks = 0;
+            for (int length = 1; length <= maxLength; length++) {
+                lengthStart[length + 1] = lengthStart[length] + lengthCounts[length];
+                totalLetters += (long) length * lengthCounts[length];
+                totalMasks += (long) maskSlots(length, alphabet) * lengthCounts[length];
+            }
+            int count = lengthStart[maxLength + 1];
+            long imageSize = imageSize(count, maxLength, totalLetters, totalMasks);
+            if (imageSize > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("词典过大: " + count + " 个单词, " + totalLetters + " 个字母");
+            }
+
+            // 同一个桶里的单词长度相同，所以每个单词的字母和掩码的起始位置都可以直接算出来
+            int[] wordStart = new int[count + 1];
+            int[] maskStart = new int[count + 1];
+            for (int length = 1; length <= maxLength; length++) {
+                for (int id = lengthStart[length]; id < lengthStart[length + 1]; id++) {
+                    wordStart[id + 1] = wordStart[id] + length;
+                    maskStart[id + 1] = maskStart[id] + maskSlots(length, alphabet);
+                }
+            }
+
+            ByteBuffer image = ByteBuffer.allocateDirect((int) imageSize).order(ByteOrder.LITTLE_ENDIAN);
+            image.putInt(0, MAGIC);
+            image.putInt(4, VERSION);
+            image.putLong(SOURCE_SIZE, sourceSize);
+            image.putLong(SOURCE_MODIFIED, sourceModified);
+            image.putInt(WORD_COUNT, count);
+            image.putInt(MAX_LENGTH, maxLength);
+            image.putInt(TOTAL_LETTERS, (int) totalLetters);
+            image.putInt(TOTAL_MASKS, (int) totalMasks);
+            image.putInt(ALPHABET_SIZE, alphabet.size());
+            image.position(HEADER_SIZE);
+            image.asCharBuffer().put(alphabet.toString());
+            image.position(HEADER_SIZE + ALPHABET_BYTES);
+            image.asIntBuffer().put(lengthStart).put(wordStart).put(maskStart);
+            image.position(0);
+
+            next = lengthStart.clone();
+            long emptyLengths = 0;
+            for (int length = 1; length <= MAX_WORD_LENGTH; length++) {
+                if (lengthCounts[length] == 0) {
+                    emptyLengths |= lengthBit(length);
+                }
+            }
+            index = new WordIndex(image, emptyLengths, alphabet);
+        }
+
+        // 统计每个长度的可用单词数量；alphabet 为 null 时任何字母都可以，letterCounts 不为 null 时记下每个字母（大写）出现的次数
+        private void countLengths(Alphabet alphabet, int[] letterCounts) {
+            int limit = text.limit();
+            int lineStart = 0;
+            while (lineStart < limit) {
+                int lineEnd = lineEnd(text, lineStart);
+                int length = playableLength(text, lineStart, lineEnd, alphabet);
+                if (length > 0) {
+                    lengthCounts[length]++;
+                    if (letterCounts != null) {
+                        for (int i = firstNonBlank(text, lineStart, lineEnd), n = 0; n < length; n++) {
+                            int c = decode(text, i);
+                            letterCounts[Character.toUpperCase((char) c)]++;
+                            i += c >>> 16;
+                        }
+                    }
+                }
+                lineStart = lineEnd + 1;
+            }
+        }
+
+        // 正在构建的索引，只有 isReady() 返回 true 的长度范围可以使用
+        public WordIndex index() {
+            return index;
+        }
+
+        public boolean isComplete() {
+            return index.readyLengths == ALL_LENGTHS;
+        }
+
+        // 已完成的百分比
+        public int progress() {
+            return index.size() == 0 ? 100 : (int) (filledWords * 100L / index.size());
+        }
+
+        // 填充长度在 [minLength, maxLength] 之间的所有桶，需要扫描一遍文本
+        public void fill(int minLength, int maxLength) {
+            long pending = lengthRange(minLength, maxLength) & ~index.readyLengths;
+            if (pending == 0) {
+                return;
+            }
+            int limit = text.limit();
+            int lineStart = 0;
+            while (lineStart < limit) {
+                int lineEnd = lineEnd(text, lineStart);
+                int length = playableLength(text, lineStart, lineEnd, alphabet);
+                if (length > 0 && (pending & lengthBit(length)) != 0) {
+                    add(next[length]++, firstNonBlank(text, lineStart, lineEnd), length);
+                }
+                lineStart = lineEnd + 1;
+            }
+            for (int length = 1; length <= MAX_WORD_LENGTH; length++) {
+                if ((pending & lengthBit(length)) != 0) {
+                    filledWords += lengthCounts[length];
+                }
+            }
+            index.readyLengths |= pending; // volatile 写入，之前写入映像的内容对读取线程可见
+        }
+
+        // 填充剩余的所有桶，并行计算难度分数，最后写入校验和
+        public WordIndex finish() {
+            fill(1, MAX_WORD_LENGTH);
+            if (!index.ranked) {
+                float[] scores = HardnessScorer.score(index);
+                index.hardness.put(0, scores);
+                index.byHardness.put(0, HardnessScorer.rank(scores));
+                index.ranked = true; // volatile 写入，分数对读取线程可见
+            }
+            index.image.putLong(CHECKSUM, checksum(index.image));
+            return index;
+        }
+
+        // 把字母换成编码后复制到单词 id 的位置，同时算出字母集合和位置掩码
+        private void add(int id, int from, int length) {
+            int to = index.wordStart.get(id);
+            int maskStart = index.maskStart.get(id);
+            long set = 0;
+            for (int i = 0, p = 0; p < length; p++) {
+                int c = decode(text, i + from);
+                int code = alphabet.indexOf((char) c);
+                codes[p] = (byte) code;
+                set |= 1L << code;
+                i += c >>> 16;
+            }
+            for (int p = 0; p < length; p++) {
+                int code = codes[p];
+                index.letters.put(to + p, (byte) code);
+                int slot = maskStart + Long.bitCount(set & ((1L << code) - 1));
+                index.positionMasks.put(slot, index.positionMasks.get(slot) | 1L << p);
+            }
+            index.letterSets.put(id, set);
+        }
+    }
+
+    // 开始分阶段构建一个文本词典
+    public static Builder builder(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer text = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new Builder(text, channel.size(), Files.getLastModifiedTime(path).toMillis());
+        }
+    }
+
+    // 文本第一行 "#alphabet: ..." 声明的字母表，没有声明时返回 null
+    private static Alphabet declaredAlphabet(ByteBuffer text) {
+        int from = text.limit() >= 3 && text.get(0) == (byte) 0xEF && text.get(1) == (byte) 0xBB
+                && text.get(2) == (byte) 0xBF ? 3 : 0; // 跳过 UTF-8 的 BOM
+        int to = lineEnd(text, from);
+        byte[] line = new byte[to - from];
+        text.get(from, line);
+        String header = new String(line, StandardCharsets.UTF_8).trim();
+        if (!header.regionMatches(true, 0, ALPHABET_HEADER, 0, ALPHABET_HEADER.length())) {
+            return null;
+        }
+        return Alphabet.of(header.substring(ALPHABET_HEADER.length()).replaceAll("\\s+", ""));
+    }
+
+    // 每个单词预留的掩码个数：不同字母数不会超过单词长度，也不会超过字母表的大小
+    private static int maskSlots(int length, Alphabet alphabet) {
+        return Math.min(length, alphabet.size());
+    }
+
+    private static long lengthBit(int length) {
+        return 1L << (length - 1);
+    }
+
+    // 长度在 [minLength, maxLength] 之间的位集合
+    private static long lengthRange(int minLength, int maxLength) {
+        int from = Math.max(minLength, 1);
+        int to = Math.min(maxLength, MAX_WORD_LENGTH);
+        if (to < from) {
+            return 0L;
+        }
+        long upTo = to == MAX_WORD_LENGTH ? ALL_LENGTHS : lengthBit(to + 1) - 1;
+        return upTo & ~(lengthBit(from) - 1);
+    }
+
+    private static int lineEnd(ByteBuffer text, int from) {
+        int limit = text.limit();
+        int i = from;
+        while (i < limit && text.get(i) != '\n') {
+            i++;
+        }
+        return i;
+    }
+
+    private static int firstNonBlank(ByteBuffer text, int from, int to) {
+        while (from < to && isBlank(text.get(from))) {
+            from++;
+        }
+        return from;
+    }
+
+    // 去掉首尾空白后的单词长度（字母数）；单词为空、过长或含有字母表以外的字符时返回 0，
+    // alphabet 为 null 时任何 BMP 中的字母都可以
+    private static int playableLength(ByteBuffer text, int from, int to, Alphabet alphabet) {
+        from = firstNonBlank(text, from, to);
+        while (to > from && isBlank(text.get(to - 1))) {
+            to--;
+        }
+        int length = 0;
+        for (int i = from; i < to; length++) {
+            if (length == MAX_WORD_LENGTH) {
+                return 0;
+            }
+            int c = decode(text, i);
+            if (c < 0 || i + (c >>> 16) > to) {
+                return 0;
+            }
+            char letter = (char) c;
+            if (alphabet != null ? alphabet.indexOf(letter) < 0 : !Character.isLetter(letter)) {
+                return 0;
+            }
+            i += c >>> 16;
+        }
+        return length;
+    }
+
+    // 解码 text 中从 i 开始的一个 UTF-8 字符，返回 字符 | 字节数 << 16；不是 BMP 中的字符或编码无效时返回 -1
+    // ASCII 字符只需一次读取
+    private static int decode(ByteBuffer text, int i) {
+        int b = text.get(i);
+        if (b >= 0) {
+            return b | 1 << 16;
+        }
+        int limit = text.limit();
+        if ((b & 0xE0) == 0xC0 && i + 1 < limit) {
+            int b1 = text.get(i + 1);
+            if ((b1 & 0xC0) == 0x80) {
+                return ((b & 0x1F) << 6 | b1 & 0x3F) | 2 << 16;
+            }
+        } else if ((b & 0xF0) == 0xE0 && i + 2 < limit) {
+            int b1 = text.get(i + 1);
+            int b2 = text.get(i + 2);
+            if ((b1 & 0xC0) == 0x80 && (b2 & 0xC0) == 0x80) {
+                return ((b & 0x0F) << 12 | (b1 & 0x3F) << 6 | b2 & 0x3F) | 3 << 16;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isBlank(byte b) {
+        return b == ' ' || b == '\t' || b == '\r';
+    }
+
+    public int size() {
+        return letterSets.limit();
+    }
+
+    // 词典的字母表，单词中的字母都在其中
+    public Alphabet getAlphabet() {
+        return alphabet;
+    }
+
+    public int maxLength() {
+        return lengthStart.length - 2;
+    }
+
+    // 长度在 [minLength, maxLength] 之间的桶是否都已加载完成
+    public boolean isReady(int minLength, int maxLength) {
+        long range = lengthRange(minLength, maxLength);
+        return (readyLengths & range) == range;
+    }
+
+    // 长度在 [minLength, maxLength] 之间的单词数量
+    public int count(int minLength, int maxLength) {
+        return rangeEnd(maxLength) - rangeStart(minLength);
+    }
+
+    // 词典映像的校验和，相同的校验和表示同一个词典，单词编号可以通用；分阶段构建完成之前为 0
+    public long checksum() {
+        return image.getLong(CHECKSUM);
+    }
+
+    // 难度分数是否已经算好，算好之后才能按难度选词
+    public boolean isRanked() {
+        return ranked;
+    }
+
+    // 单词的难度分数，越大越难
+    public float hardness(int id) {
+        return hardness.get(id);
+    }
+
+    // 随机选出一个难度排名在 [from, to) 之间的单词编号，排名用比例表示（0 为最容易，1 为最难），
+    // 例如 [0, 1/3) 为最容易的三分之一；没有符合条件的单词时返回 -1
+    public int pickByHardness(double from, double to, Random random) {
+        int start = rankStart(from);
+        int end = rankStart(to);
+        if (end <= start) {
+            return -1;
+        }
+        return byHardness.get(start + random.nextInt(end - start));
+    }
+
+    // 难度排名比例 fraction 对应的名次（0 为最容易的单词，1 对应 size()）
+    public int rankStart(double fraction) {
+        int count = size();
+        return fraction >= 1 ? count : (int) (Math.max(fraction, 0) * count);
+    }
+
+    // 难度排名为 rank 的单词编号（0 为最容易的单词）
+    public int rankedId(int rank) {
+        return byHardness.get(rank);
+    }
+
+    // 同长度的单词编号连续，返回长度不小于 minLength 的第一个单词编号
+    public int firstId(int minLength) {
+        return rangeStart(minLength);
+    }
+
+    // 随机选出一个长度在 [minLength, maxLength] 之间的单词编号，没有符合条件的单词时返回 -1
+    public int pick(int minLength, int maxLength, Random random) {
+        int start = rangeStart(minLength);
+        int end = rangeEnd(maxLength);
+        if (end <= start) {
+            return -1;
+        }
+        return start + random.nextInt(end - start);
+    }
+
+    // 只在需要显示完整单词时才创建 String
+    public String word(int id) {
+        int start = wordStart.get(id);
+        char[] chars = new char[length(id)];
+        for (int p = 0; p < chars.length; p++) {
+            chars[p] = alphabet.letter(letters.get(start + p));
+        }
+        return new String(chars);
+    }
+
+    public int length(int id) {
+        return wordStart.get(id + 1) - wordStart.get(id);
+    }
+
+    public char letterAt(int id, int position) {
+        return alphabet.letter(letterCode(id, position));
+    }
+
+    // 单词第 position 个字母的编码
+    public int letterCode(int id, int position) {
+        return letters.get(wordStart.get(id) + position);
+    }
+
+    // 把编号在 [firstId, firstId + count) 之间的单词的字母编码依次复制到 dst，同一长度的单词字母连续存放，
+    // 所以长度为 n 的第 i 个单词的字母在 dst[i * n] 到 dst[i * n + n - 1] 中
+    public void getLetters(int firstId, int count, byte[] dst) {
+        int start = wordStart.get(firstId);
+        letters.get(start, dst, 0, wordStart.get(firstId + count) - start);
+    }
+
+    // 把编号在 [firstId, firstId + count) 之间的单词的字母集合复制到 dst
+    public void getLetterSets(int firstId, int count, long[] dst) {
+        letterSets.get(firstId, dst, 0, count);
+    }
+
+    // 长度为 length 的单词的共享副本，第一次用到时创建；这个长度的桶必须已经就绪
+    LengthBucket bucket(int length) {
+        LengthBucket bucket = buckets.get(length);
+        if (bucket == null) {
+            bucket = new LengthBucket(this, length);
+            if (!buckets.compareAndSet(length, null, bucket)) {
+                bucket = buckets.get(length); // 其他线程同时创建了相同的副本
+            }
+        }
+        return bucket;
+    }
+
+    // 单词包含的字母集合，第 i 位对应编码为 i 的字母
+    public long letterSet(int id) {
+        return letterSets.get(id);
+    }
+
+    // 单词中不同字母的个数
+    public int distinctLetters(int id) {
+        return Long.bitCount(letterSets.get(id));
+    }
+
+    // 字母在单词中出现的位置掩码，letterBit 为 1L << 字母编码，字母不在单词中时返回 0
+    public long positions(int id, long letterBit) {
+        long set = letterSets.get(id);
+        if ((set & letterBit) == 0) {
+            return 0L;
+        }
+        // 掩码的存放位置：起始下标加上单词中编码比该字母小的字母个数
+        return positionMasks.get(maskStart.get(id) + Long.bitCount(set & (letterBit - 1)));
+    }
+
+    private int rangeStart(int from) {
+        if (from > maxLength()) {
+            return size();
+        }
+        return lengthStart[Math.max(from, 1)];
+    }
+
+    private int rangeEnd(int to) {
+        if (to < 1) {
+            return 0;
+        }
+        return lengthStart[Math.min(to, maxLength()) + 1];
+    }
+}
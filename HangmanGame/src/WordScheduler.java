@@ -0,0 +1,132 @@
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.IntToDoubleFunction;
+
+// 每个玩家的选词器，每个难度一份状态，支持两种模式：
+//   WEIGHTED  按权重抽取（例如按难度分数），使用共享的别名表，每次 O(1)，可能重复
+//   SHUFFLE   洗牌袋：难度内的每个单词都抽过一次之前不会重复，抽完后换一种顺序重新开始
+// 洗牌袋不保存打乱后的列表，而是用带密钥的可逆变换把 0, 1, 2, ... 映射为 [0, 2^k) 的一个排列，跳过不小于单词数的值，
+// 所以每个难度的状态只有一个 long（高 32 位为第几轮、低 32 位为本轮的计数器），按权重抽取的状态是已抽取的次数；
+// 状态用 CAS 更新，同一个玩家的多个会话可以同时抽取
+// 随机数由种子和计数器算出（SplitMix64），相同的种子得到相同的抽取顺序，可用于可重现的压力测试
+public class WordScheduler {
+    public enum Mode {
+        WEIGHTED,
+        SHUFFLE
+    }
+
+    private static final long GOLDEN = 0x9E3779B97F4A7C15L;
+    private static final int ROUNDS = 3;
+
+    // 一个词典的共享抽取表，每个难度的别名表在第一次使用时构建；词典重新加载后需要新建
+    public static final class Tables {
+        private final WordIndex index;
+        private final IntToDoubleFunction weight;
+        private final AliasTable[] aliasTables = new AliasTable[Difficulty.values().length];
+
+        // weight 为单词编号对应的权重
+        public Tables(WordIndex index, IntToDoubleFunction weight) {
+            this.index = index;
+            this.weight = weight;
+        }
+
+        // 按难度分数加权，越难的单词越容易被抽到
+        public static Tables byHardness(WordIndex index) {
+            return new Tables(index, id -> index.isRanked() ? index.hardness(id) : 1.0);
+        }
+
+        public WordIndex getIndex() {
+            return index;
+        }
+
+        private synchronized AliasTable aliasTable(Difficulty difficulty, int start, int end) {
+            AliasTable table = aliasTables[difficulty.ordinal()];
+            if (table == null || table.size() != end - start) {
+                double[] weights = new double[end - start];
+                for (int i = 0; i < weights.length; i++) {
+                    weights[i] = Math.max(0, weight.applyAsDouble(Difficulty.wordAt(index, start + i)));
+                }
+                table = new AliasTable(weights);
+                aliasTables[difficulty.ordinal()] = table;
+            }
+            return table;
+        }
+    }
+
+    private final Mode mode;
+    private final long seed;
+    private final AtomicLongArray states = new AtomicLongArray(Difficulty.values().length);
+
+    public WordScheduler(Mode mode, long seed) {
+        this.mode = mode;
+        this.seed = seed;
+    }
+
+    // 不需要重现时使用随机的种子
+    public WordScheduler(Mode mode) {
+        this(mode, ThreadLocalRandom.current().nextLong());
+    }
+
+    // 抽取这个难度的下一个单词编号，没有符合条件的单词时返回 -1
+    public int next(Tables tables, Difficulty difficulty) {
+        WordIndex index = tables.index;
+        int start = difficulty.bandStart(index);
+        int end = difficulty.bandEnd(index);
+        if (end <= start) {
+            return -1;
+        }
+        int position;
+        if (mode == Mode.WEIGHTED) {
+            long draw = states.getAndIncrement(difficulty.ordinal());
+            position = tables.aliasTable(difficulty, start, end).sample(mix(seed + draw * GOLDEN));
+        } else {
+            position = nextInBag(difficulty.ordinal(), end - start);
+        }
+        return Difficulty.wordAt(index, start + position);
+    }
+
+    // 洗牌袋中的下一个位置，平均每次最多计算两次变换（2^k < 2n）
+    private int nextInBag(int slot, int size) {
+        int bits = Math.max(1, 32 - Integer.numberOfLeadingZeros(size - 1));
+        long period = 1L << bits;
+        while (true) {
+            long state = states.get(slot);
+            long round = state >>> 32;
+            long counter = state & 0xFFFFFFFFL;
+            long value;
+            do {
+                if (counter >= period) {
+                    round++; // 这一轮所有单词都抽过了，换一个密钥重新开始
+                    counter = 0;
+                }
+                value = permute(counter++, mix(seed ^ (round + 1) * GOLDEN), bits);
+            } while (value >= size);
+            if (states.compareAndSet(slot, state, round << 32 | counter)) {
+                return (int) value;
+            }
+        }
+    }
+
+    // [0, 2^bits) 上由 key 决定的一个排列：每一步（加密钥、乘奇数、右移异或）都是可逆的
+    private static long permute(long x, long key, int bits) {
+        long mask = (1L << bits) - 1;
+        int shift = Math.max(1, bits / 2);
+        for (int round = 0; round < ROUNDS; round++) {
+            x = (x + (key >>> (round * 16))) & mask;
+            x = (x * GOLDEN) & mask;
+            x ^= x >>> shift;
+        }
+        return x;
+    }
+
+    // SplitMix64 的输出函数
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+}
@@ -0,0 +1,85 @@
+import java.util.Arrays;
+
+// 邪恶模式对手的测试，独立于游戏模块（HangmanTest.iml），不依赖测试框架
+// 用法: java EvilAdversaryTest（需要把 HangmanGame 模块放在 classpath 上），全部通过时输出 OK，失败时抛出 AssertionError
+public class EvilAdversaryTest {
+    public static void main(String[] args) {
+        manyPatternsKeepLargestGroup();
+        manyPatternsAcrossGrow();
+        bucketsAreShared();
+        System.out.println("OK");
+    }
+
+    // 由 A、B、C 组成、至少含一个 A 的所有 10 个字母的单词：猜 A 时有 1023 种揭示模式（超过哈希表初始容量的一半），
+    // 只含一个 A 的每组都有 2^9 = 512 个单词，最大；同样大时保留 A 在第一个位置的一组
+    private static void manyPatternsKeepLargestGroup() {
+        WordIndex index = WordIndex.of(words("ABC", 10, 'A'));
+        HangmanEngine engine = new HangmanEngine();
+        engine.start(index, 0, Difficulty.HARD, GameMode.EVIL);
+        check(engine.getCandidateCount() == index.size(), "所有单词都是候选: " + engine.getCandidateCount());
+        check(engine.guess('A') == HangmanEngine.HIT, "A 必然猜中");
+        check(engine.getCandidateCount() == 512, "保留 512 个单词: " + engine.getCandidateCount());
+        String word = engine.getWord();
+        check(word.charAt(0) == 'A' && word.indexOf('A', 1) < 0, "A 只在第一个位置: " + word);
+        for (int p = 0; p < word.length(); p++) {
+            check(engine.isRevealed(p) == (p == 0), "只揭示第一个位置");
+        }
+        // 下一次猜测复用归还到池中的哈希表
+        engine.guess('B');
+        check(engine.getCandidateCount() > 0 && engine.getWord().charAt(0) == 'A', "B 之后仍与已揭示的 A 一致");
+    }
+
+    // 由 A、B 组成的所有 11 个字母的单词：猜 A 时有 2047 种揭示模式，哈希表要扩容两次；每组只有一个单词，保留猜错的一组
+    private static void manyPatternsAcrossGrow() {
+        WordIndex index = WordIndex.of(words("AB", 11, (char) 0));
+        HangmanEngine engine = new HangmanEngine();
+        for (int game = 0; game < 2; game++) {
+            engine.start(index, 0, Difficulty.HARD, GameMode.EVIL);
+            check(engine.guess('A') == HangmanEngine.MISS, "同样大时保留猜错的一组");
+            check(engine.getCandidateCount() == 1, "只剩一个单词: " + engine.getCandidateCount());
+            check(engine.getWord().equals("BBBBBBBBBBB"), "单词中没有 A: " + engine.getWord());
+        }
+    }
+
+    // 同一长度的单词副本在会话之间共享，每个会话只有候选位集合
+    private static void bucketsAreShared() {
+        WordIndex index = WordIndex.of(words("AB", 6, (char) 0));
+        HangmanEngine first = new HangmanEngine();
+        HangmanEngine second = new HangmanEngine();
+        first.start(index, 0, Difficulty.HARD, GameMode.EVIL);
+        WordIndex.LengthBucket bucket = index.bucket(6);
+        second.start(index, 0, Difficulty.HARD, GameMode.EVIL);
+        check(index.bucket(6) == bucket, "同一长度只复制一次");
+        first.guess('A');
+        check(second.getCandidateCount() == 64, "一个会话的猜测不影响其他会话: " + second.getCandidateCount());
+    }
+
+    // 由 letters 中的字母组成的所有长度为 length 的单词，required 不为 0 时只保留含有这个字母的单词
+    private static String[] words(String letters, int length, char required) {
+        int total = 1;
+        for (int i = 0; i < length; i++) {
+            total *= letters.length();
+        }
+        String[] words = new String[total];
+        int count = 0;
+        char[] word = new char[length];
+        for (int n = 0; n < total; n++) {
+            int rest = n;
+            for (int p = 0; p < length; p++) {
+                word[p] = letters.charAt(rest % letters.length());
+                rest /= letters.length();
+            }
+            String w = new String(word);
+            if (required == 0 || w.indexOf(required) >= 0) {
+                words[count++] = w;
+            }
+        }
+        return Arrays.copyOf(words, count);
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+}